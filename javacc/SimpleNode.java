@@ -1,6 +1,7 @@
 /* Generated By:JJTree: Do not edit this line. SimpleNode.java Version 6.1 */
 /* JavaCCOptions:MULTI=false,NODE_USES_PARSER=false,VISITOR=false,TRACK_TOKENS=false,NODE_PREFIX=AST,NODE_EXTENDS=,NODE_FACTORY=,SUPPORT_CLASS_VISIBILITY_PUBLIC=true */
 import pt.up.fe.comp.jmm.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeKinds;
 
 import java.lang.RuntimeException;
 import java.util.Arrays;
@@ -12,6 +13,8 @@ import java.util.List;
 public
 class SimpleNode implements Node, JmmNode {
 
+  private static final int[] KIND_IDS = JmmNodeKinds.getIds(JAVAMINUSMINUSPARSERTreeConstants.jjtNodeName);
+
   protected Node parent;
   protected Node[] children;
   protected int id;
@@ -35,6 +38,10 @@ class SimpleNode implements Node, JmmNode {
     return JAVAMINUSMINUSPARSERTreeConstants.jjtNodeName[id];
   }
 
+  public int getKindId() {
+    return KIND_IDS[id];
+  }
+
   public List<String> getAttributes() {
     return new ArrayList<>(this.attributes.keySet());
   }
@@ -62,6 +69,10 @@ class SimpleNode implements Node, JmmNode {
     return jjtGetNumChildren();
   }
 
+  public JmmNode getChild(int index) {
+    return (JmmNode) children[index];
+  }
+
   public void add(JmmNode child, int index) {
     if(!(child instanceof Node)) {
       throw new RuntimeException("Node not supported: " + child.getClass());
@@ -149,6 +149,26 @@ public class TestUtils {
     /**
      * Checks if there are no Error reports. Throws exception if there is at least one Report of type Error.
      */
+    /**
+     * Generates a valid class named Big with many small methods, for tests and benchmarks of large inputs.
+     *
+     * @param methods
+     *            number of methods, each with a local variable, a loop and a call to io.println
+     * @param fields
+     *            declarations of the fields of the class, e.g. "int total;\n", or an empty string
+     * @return the code of the class
+     */
+    public static String generateBigClass(int methods, String fields) {
+        StringBuilder code = new StringBuilder("import io;\nclass Big {\n").append(fields);
+        for (int i = 0; i < methods; i++) {
+            code.append(String.format(
+                    "public int m%d(int a) { int b; b = a * %d + 1; while (b < 10) { b = b + 1; } io.println(b); return b; }\n",
+                    i, i));
+        }
+        code.append("public static void main(String[] args) { }\n}\n");
+        return code.toString();
+    }
+
     public static void noErrors(List<Report> reports) {
         reports.stream()
                 .filter(report -> report.getType() == ReportType.ERROR)
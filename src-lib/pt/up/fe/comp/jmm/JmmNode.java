@@ -1,14 +1,18 @@
 package pt.up.fe.comp.jmm;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.JmmNodeKinds;
 import pt.up.fe.comp.jmm.ast.JmmSerializer;
 import pt.up.fe.specs.util.SpecsCollections;
 
@@ -25,6 +29,13 @@ public interface JmmNode {
      */
     String getKind();
 
+    /**
+     * @return the id of the kind of this node, as given by {@link JmmNodeKinds}
+     */
+    default int getKindId() {
+        return JmmNodeKinds.getId(getKind());
+    }
+
     /**
      * @return the names of the attributes supported by this Node kind
      */
@@ -95,6 +106,27 @@ public interface JmmNode {
      */
     int getNumChildren();
 
+    /**
+     * Unlike {@link #getChildren()}, does not create a list of the children.
+     * 
+     * @param index
+     * @return the child at the given position
+     */
+    default JmmNode getChild(int index) {
+        return getChildren().get(index);
+    }
+
+    /**
+     * Applies the given action to each child, in order, without creating a list of the children.
+     * 
+     * @param action
+     */
+    default void forEachChild(Consumer<JmmNode> action) {
+        for (int i = 0; i < getNumChildren(); i++) {
+            action.accept(getChild(i));
+        }
+    }
+
     /**
      * Adds a new node at the end of the children list
      * 
@@ -125,8 +157,12 @@ public interface JmmNode {
         return JmmNodeImpl.fromJson(json);
     }
 
+    /**
+     * 
+     * @return a copy of this tree made only of {@link JmmNodeImpl} nodes, detached from the parser classes
+     */
     default JmmNode sanitize() {
-        return fromJson(this.toJson());
+        return JmmNodeImpl.fromNode(this);
     }
 
     static <T> List<JmmNode> convertChildren(T[] children) {
@@ -147,10 +183,21 @@ public interface JmmNode {
     }
 
     default void toTree(StringBuilder tree, String prefix) {
-        tree.append(prefix).append(toString()).append("\n");
-
-        for (var child : getChildren()) {
-            child.toTree(tree, prefix + " ");
+        // Explicit stack instead of recursion, so that deep trees can be printed
+        Deque<JmmNode> nodes = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        nodes.push(this);
+        depths.push(0);
+
+        while (!nodes.isEmpty()) {
+            var node = nodes.pop();
+            int depth = depths.pop();
+            tree.append(prefix).append(" ".repeat(depth)).append(node.toString()).append("\n");
+
+            for (int i = node.getNumChildren() - 1; i >= 0; i--) {
+                nodes.push(node.getChild(i));
+                depths.push(depth + 1);
+            }
         }
     }
 
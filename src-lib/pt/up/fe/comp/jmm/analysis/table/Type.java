@@ -3,10 +3,15 @@ package pt.up.fe.comp.jmm.analysis.table;
 public class Type {
     private final String name;
     private final boolean isArray;
+    private final TypeKind kind;
 
+    /**
+     * For a shared instance, see {@link Types#of(String, boolean)}
+     */
     public Type(String name, boolean isArray) {
         this.name = name;
         this.isArray = isArray;
+        this.kind = TypeKind.of(name);
     }
 
     public String getName() {
@@ -17,6 +22,14 @@ public class Type {
         return isArray;
     }
 
+    /**
+     *
+     * @return the kind of the elements of this type, whether or not it is an array
+     */
+    public TypeKind getKind() {
+        return kind;
+    }
+
     @Override
     public String toString() {
         return "Type [name=" + name + ", isArray=" + isArray + "]";
@@ -0,0 +1,37 @@
+package pt.up.fe.comp.jmm.analysis.table;
+
+/**
+ * Kind of the elements of a {@link Type}, so checks on types do not have to compare names.
+ */
+public enum TypeKind {
+    INT,
+    BOOLEAN,
+    VOID,
+    STRING,
+    CLASS;
+
+    /**
+     *
+     * @param name
+     *            the name of a type (e.g. int, boolean, a class name)
+     * @return the kind of the type with the given name
+     */
+    public static TypeKind of(String name) {
+        if (name == null) {
+            return CLASS;
+        }
+
+        switch (name) {
+        case "int":
+            return INT;
+        case "boolean":
+            return BOOLEAN;
+        case "void":
+            return VOID;
+        case "String":
+            return STRING;
+        default:
+            return CLASS;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package pt.up.fe.comp.jmm.analysis.table;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of canonical {@link Type} instances, one for each name and array flag.
+ * <p>
+ * Types taken from the pool are shared instead of allocated for each use. Compare them with equals, which returns at
+ * once for the same instance and still works for types built with the constructor of {@link Type}.
+ *
+ * @author COMP2021
+ *
+ */
+public final class Types {
+
+    private static final Map<String, Type> SCALARS = new ConcurrentHashMap<>();
+    private static final Map<String, Type> ARRAYS = new ConcurrentHashMap<>();
+
+    public static final Type INT = of("int", false);
+    public static final Type INT_ARRAY = of("int", true);
+    public static final Type BOOLEAN = of("boolean", false);
+    public static final Type VOID = of("void", false);
+    public static final Type STRING_ARRAY = of("String", true);
+
+    private Types() {
+    }
+
+    /**
+     *
+     * @param name
+     * @param isArray
+     * @return the canonical type with the given name and array flag
+     */
+    public static Type of(String name, boolean isArray) {
+        Objects.requireNonNull(name, "A type needs a name");
+        Map<String, Type> pool = isArray ? ARRAYS : SCALARS;
+        Type type = pool.get(name);
+        return type != null ? type : pool.computeIfAbsent(name, newName -> new Type(newName, isArray));
+    }
+
+    /**
+     *
+     * @param type
+     * @return the canonical instance of the given type
+     */
+    public static Type of(Type type) {
+        return of(type.getName(), type.isArray());
+    }
+}
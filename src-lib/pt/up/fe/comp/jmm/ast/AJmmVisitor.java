@@ -1,5 +1,6 @@
 package pt.up.fe.comp.jmm.ast;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.BiFunction;
@@ -7,14 +8,25 @@ import java.util.function.BiFunction;
 import pt.up.fe.comp.jmm.JmmNode;
 import pt.up.fe.specs.util.SpecsCheck;
 
+/**
+ * Base visitor, which chooses the visit method of a node from its kind.
+ * <p>
+ * Visit methods are registered by the name of the kind, and kept in a table indexed by the kind id of
+ * {@link JmmNodeKinds}, so choosing the visit method of a node is an array access.
+ */
 public abstract class AJmmVisitor<D, R> implements JmmVisitor<D, R> {
 
     private final Map<String, BiFunction<JmmNode, D, R>> visitMap;
+    private BiFunction<JmmNode, D, R>[] visitTable;
     private BiFunction<JmmNode, D, R> defaultVisit;
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public AJmmVisitor(Map<String, BiFunction<JmmNode, D, R>> visitMap, BiFunction<JmmNode, D, R> defaultVisit) {
         this.visitMap = visitMap;
+        this.visitTable = new BiFunction[0];
         this.defaultVisit = defaultVisit;
+
+        visitMap.forEach(this::addToTable);
     }
 
     public AJmmVisitor() {
@@ -37,6 +49,15 @@ public abstract class AJmmVisitor<D, R> implements JmmVisitor<D, R> {
     @Override
     public void addVisit(String kind, BiFunction<JmmNode, D, R> method) {
         this.visitMap.put(kind, method);
+        addToTable(kind, method);
+    }
+
+    private void addToTable(String kind, BiFunction<JmmNode, D, R> method) {
+        int kindId = JmmNodeKinds.getId(kind);
+        if (kindId >= visitTable.length) {
+            visitTable = Arrays.copyOf(visitTable, kindId + 1);
+        }
+        visitTable[kindId] = method;
     }
 
     @Override
@@ -70,6 +91,24 @@ public abstract class AJmmVisitor<D, R> implements JmmVisitor<D, R> {
         return visitMethod;
     }
 
+    /**
+     * 
+     * @param kindId    the id of the kind of the node, see {@link JmmNode#getKindId()}
+     * @return          the visit method to use, or default if no visit method was found
+     */
+    protected BiFunction<JmmNode, D, R> getVisit(int kindId) {
+        var visitMethod = kindId < visitTable.length ? visitTable[kindId] : null;
+
+        if (visitMethod == null) {
+            SpecsCheck.checkNotNull(defaultVisit,
+                    () -> "No default visitor is set, could not visit node of kind " + JmmNodeKinds.getName(kindId));
+
+            visitMethod = defaultVisit;
+        }
+
+        return visitMethod;
+    }
+
     /**
      * Given a Node, gets the type of visit ({@code BiFunction<JmmNode, D, R>}) from its kind and calls it with apply() with the parameters
      * The JmmNode must not be null.
@@ -81,6 +120,6 @@ public abstract class AJmmVisitor<D, R> implements JmmVisitor<D, R> {
     public R visit(JmmNode jmmNode, D data) {
         SpecsCheck.checkNotNull(jmmNode, () -> "Node should not be null");
 
-        return getVisit(jmmNode.getKind()).apply(jmmNode, data);
+        return getVisit(jmmNode.getKindId()).apply(jmmNode, data);
     }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package pt.up.fe.comp.jmm.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import pt.up.fe.comp.jmm.JmmNode;
+import pt.up.fe.specs.util.SpecsCheck;
+
+/**
+ * A node stored in a {@link JmmNodeArena}.
+ * <p>
+ * Instances are lightweight views over the arena (the arena plus an index), created on demand and cached, so the same
+ * node is always represented by the same object.
+ * <p>
+ * Nodes of other classes added as children are copied into the arena.
+ *
+ * @author COMP2021
+ *
+ */
+public final class CompactJmmNode implements JmmNode {
+
+    private final JmmNodeArena arena;
+    private final int index;
+
+    CompactJmmNode(JmmNodeArena arena, int index) {
+        this.arena = arena;
+        this.index = index;
+    }
+
+    public JmmNodeArena getArena() {
+        return arena;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String getKind() {
+        return arena.getKind(index);
+    }
+
+    @Override
+    public int getKindId() {
+        return arena.getKindId(index);
+    }
+
+    @Override
+    public List<String> getAttributes() {
+        return arena.getAttributes(index);
+    }
+
+    @Override
+    public void put(String attribute, String value) {
+        arena.put(index, attribute, value);
+    }
+
+    @Override
+    public String get(String attribute) {
+        var value = arena.get(index, attribute);
+
+        SpecsCheck.checkNotNull(value, () -> "Node " + toString() + " does not contain attribute '" + attribute + "'");
+
+        return value;
+    }
+
+    @Override
+    public Optional<String> getOptional(String attribute) {
+        return Optional.ofNullable(arena.get(index, attribute));
+    }
+
+    @Override
+    public JmmNode getParent() {
+        return arena.getParent(index);
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        int numChildren = arena.getNumChildren(index);
+        List<JmmNode> children = new ArrayList<>(numChildren);
+        for (int i = 0; i < numChildren; i++) {
+            children.add(arena.getChild(index, i));
+        }
+        return children;
+    }
+
+    @Override
+    public int getNumChildren() {
+        return arena.getNumChildren(index);
+    }
+
+    @Override
+    public JmmNode getChild(int index) {
+        Objects.checkIndex(index, getNumChildren());
+        return arena.getChild(this.index, index);
+    }
+
+    @Override
+    public void add(JmmNode child, int index) {
+        arena.insertChild(this.index, arena.adopt(child), index);
+    }
+
+    /**
+     * Returns this node, the arena is already independent of the parser classes.
+     */
+    @Override
+    public JmmNode sanitize() {
+        return this;
+    }
+
+    @Override
+    public JmmNode removeChild(int index) {
+        int numChildren = getNumChildren();
+        if (index >= numChildren) {
+            System.out.println(
+                    "[WARNING] Tried to remove child at index " + index + ", but node only has " + numChildren
+                            + " children");
+            return null;
+        }
+
+        return arena.getNode(arena.removeChild(this.index, index));
+    }
+
+    @Override
+    public int removeChild(JmmNode node) {
+        int numChildren = getNumChildren();
+        for (int i = 0; i < numChildren; i++) {
+            if (arena.getChild(index, i) == node) {
+                removeChild(i);
+                return i;
+            }
+        }
+
+        System.out
+                .println("[WARNING] Tried to remove child from node, but could not find it.\nChild:" + node
+                        + "\nParent:" + this);
+        return -1;
+    }
+
+    @Override
+    public void delete() {
+        var parent = getParent();
+        if (parent == null) {
+            System.out.println("[WARNING] Tried to remove itself from the tree, but node has no parent");
+            return;
+        }
+
+        parent.removeChild(this);
+    }
+
+    @Override
+    public String toString() {
+        var attrs = getAttributes();
+        var attrsString = attrs.isEmpty() ? ""
+                : attrs.stream()
+                        .map(attr -> attr + ": " + get(attr))
+                        .collect(Collectors.joining(", ", " (", ")"));
+        return getKind() + attrsString;
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2021 SPeCS.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License. under the License.
+ */
+
+package pt.up.fe.comp.jmm.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import pt.up.fe.comp.jmm.JmmNode;
+
+/**
+ * Visitor where the visit methods decide which children to visit, and when (e.g. an expression visiting its operands
+ * with the expected types). Each node is visited only when some visit method asks for it.
+ * <p>
+ * Nodes without a visit method have their children visited with the same data, see
+ * {@link #visitChildren(JmmNode, Object)}.
+ */
+public class ControlledJmmVisitor<D, R> extends AJmmVisitor<D, R> {
+
+    private final BiFunction<R, List<R>, R> reduce;
+
+    /**
+     *
+     * @param reduce
+     *            a reduce function, which returns a result based on the result of the current node and the results of
+     *            its children
+     */
+    public ControlledJmmVisitor(BiFunction<R, List<R>, R> reduce) {
+        this.reduce = reduce;
+        setDefaultVisit(this::visitChildren);
+    }
+
+    /**
+     * No arguments constructor, where nodes without a visit method return null.
+     */
+    public ControlledJmmVisitor() {
+        this((nodeResult, childrenResults) -> nodeResult);
+    }
+
+    /**
+     * Visits each child of the node with the given data.
+     *
+     * @param jmmNode
+     *            the node whose children are visited
+     * @param data
+     *            data to use in the visit of the children
+     * @return the reduce of null, as the result of the node, with the results of the children
+     */
+    protected R visitChildren(JmmNode jmmNode, D data) {
+        List<R> childrenResults = new ArrayList<>(jmmNode.getNumChildren());
+        for (int i = 0; i < jmmNode.getNumChildren(); i++) {
+            childrenResults.add(visit(jmmNode.getChild(i), data));
+        }
+
+        return reduce.apply(null, childrenResults);
+    }
+
+    /**
+     * Left-deep chains (e.g. a + b + c + d) can be as deep as they are long, so visit methods can walk them in a loop
+     * with this list instead of visiting each operation inside the other.
+     *
+     * @param jmmNode
+     *            the outermost operation of the chain
+     * @return the nodes of the same kind as the given one reached through first children, from the given node to the
+     *         innermost
+     */
+    protected List<JmmNode> getLeftChain(JmmNode jmmNode) {
+        List<JmmNode> chain = new ArrayList<>();
+        for (var node = jmmNode; node.getKindId() == jmmNode.getKindId(); node = node.getChild(0)) {
+            chain.add(node);
+        }
+
+        return chain;
+    }
+}
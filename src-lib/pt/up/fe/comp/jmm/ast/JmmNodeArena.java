@@ -0,0 +1,409 @@
+package pt.up.fe.comp.jmm.ast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import pt.up.fe.comp.jmm.JmmNode;
+
+/**
+ * Compact storage for a whole AST, kept in struct-of-arrays form.
+ * <p>
+ * Each node is an index into the arrays below: its kind is the id given by {@link JmmNodeKinds}, the children are a range of
+ * {@link #childIndex} and the attributes are a range of {@link #attrKey} / {@link #attrValue}, with interned keys, in
+ * the order they were added. Numeric "line" and "col" attributes are kept as ints, with a null value in the range. Nodes are accessed through {@link CompactJmmNode} views, which implement
+ * {@link JmmNode}.
+ * <p>
+ * The arrays are append-only: when the children or attributes of a node grow, its range is moved to the end.
+ *
+ * @author COMP2021
+ *
+ */
+public final class JmmNodeArena {
+
+    private static final int NO_PARENT = -1;
+    private static final int NO_POSITION = Integer.MIN_VALUE;
+
+    private static final String LINE = "line";
+    private static final String COL = "col";
+
+    private final List<String> keyNames;
+    private final Map<String, Integer> keyIds;
+    private final Map<String, String> values;
+
+    private int size;
+    private int[] kind;
+    private int[] line;
+    private int[] col;
+    private int[] parent;
+    private int[] childStart;
+    private int[] childCount;
+    private int[] attrStart;
+    private int[] attrCount;
+    private CompactJmmNode[] views;
+
+    private int childTop;
+    private int[] childIndex;
+
+    private int attrTop;
+    private int[] attrKey;
+    private String[] attrValue;
+
+    /**
+     *
+     * @param kindNames
+     *            names of the node kinds (e.g. the node names generated by JJTree), registered in
+     *            {@link JmmNodeKinds} in this order
+     * @param capacity
+     *            expected number of nodes
+     */
+    public JmmNodeArena(String[] kindNames, int capacity) {
+        JmmNodeKinds.getIds(kindNames);
+
+        this.keyNames = new ArrayList<>();
+        this.keyIds = new HashMap<>();
+        this.values = new HashMap<>();
+
+        capacity = Math.max(capacity, 16);
+        this.kind = new int[capacity];
+        this.line = new int[capacity];
+        this.col = new int[capacity];
+        this.parent = new int[capacity];
+        this.childStart = new int[capacity];
+        this.childCount = new int[capacity];
+        this.attrStart = new int[capacity];
+        this.attrCount = new int[capacity];
+        this.views = new CompactJmmNode[capacity];
+        this.childIndex = new int[capacity];
+        this.attrKey = new int[capacity];
+        this.attrValue = new String[capacity];
+    }
+
+    /**
+     * Copies the given tree into a new arena.
+     *
+     * @param root
+     * @param kindNames
+     *            names of the node kinds (e.g. the node names generated by JJTree)
+     * @return the root of the compact tree
+     */
+    public static CompactJmmNode compact(JmmNode root, String[] kindNames) {
+        JmmNodeArena arena = new JmmNodeArena(kindNames, 1024);
+        return arena.getNode(arena.copy(root));
+    }
+
+    /**
+     * @return the number of nodes stored in this arena, including nodes that were removed from the tree
+     */
+    public int getNumNodes() {
+        return size;
+    }
+
+    /**
+     *
+     * @param kind
+     * @return a new node, without parent, children or attributes
+     */
+    public CompactJmmNode newNode(String kind) {
+        return getNode(addNode(kind));
+    }
+
+    /**
+     * Copies a tree into this arena, breadth-first and without recursion.
+     *
+     * @return the index of the copied root
+     */
+    int copy(JmmNode root) {
+        int rootIndex = addNode(root.getKind());
+        copyAttributes(root, rootIndex);
+
+        List<JmmNode> queue = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        queue.add(root);
+        indexes.add(rootIndex);
+
+        for (int current = 0; current < queue.size(); current++) {
+            JmmNode node = queue.get(current);
+            int index = indexes.get(current);
+
+            List<JmmNode> children = node.getChildren();
+            reserveChildren(index, children.size());
+            for (JmmNode child : children) {
+                int childIndex = addNode(child.getKind());
+                copyAttributes(child, childIndex);
+                appendChild(index, childIndex);
+
+                queue.add(child);
+                indexes.add(childIndex);
+            }
+
+            // Let the source nodes be collected as soon as possible
+            queue.set(current, null);
+        }
+
+        return rootIndex;
+    }
+
+    private void copyAttributes(JmmNode node, int index) {
+        for (String attribute : node.getAttributes()) {
+            put(index, attribute, node.get(attribute));
+        }
+    }
+
+    private int addNode(String kindName) {
+        if (size == kind.length) {
+            int capacity = size * 2;
+            kind = Arrays.copyOf(kind, capacity);
+            line = Arrays.copyOf(line, capacity);
+            col = Arrays.copyOf(col, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            childStart = Arrays.copyOf(childStart, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            attrStart = Arrays.copyOf(attrStart, capacity);
+            attrCount = Arrays.copyOf(attrCount, capacity);
+            views = Arrays.copyOf(views, capacity);
+        }
+
+        int index = size++;
+        kind[index] = JmmNodeKinds.getId(kindName);
+        line[index] = NO_POSITION;
+        col[index] = NO_POSITION;
+        parent[index] = NO_PARENT;
+        childStart[index] = childTop;
+        childCount[index] = 0;
+        attrStart[index] = attrTop;
+        attrCount[index] = 0;
+        return index;
+    }
+
+    private int keyId(String key) {
+        Integer id = keyIds.get(key);
+        if (id == null) {
+            id = keyNames.size();
+            keyNames.add(key);
+            keyIds.put(key, id);
+        }
+        return id;
+    }
+
+    private String intern(String value) {
+        String interned = values.putIfAbsent(value, value);
+        return interned != null ? interned : value;
+    }
+
+    /**
+     * Returns the view of the node, created the first time it is needed. Threads that read the same tree (e.g. the
+     * parallel analysis of its methods) get the same view, as results are kept by node identity.
+     */
+    CompactJmmNode getNode(int index) {
+        if (index == NO_PARENT) {
+            return null;
+        }
+
+        // Views only have final fields, so one seen through the array without the lock is fully built
+        CompactJmmNode view = views[index];
+        if (view == null) {
+            synchronized (this) {
+                view = views[index];
+                if (view == null) {
+                    view = new CompactJmmNode(this, index);
+                    views[index] = view;
+                }
+            }
+        }
+        return view;
+    }
+
+    String getKind(int index) {
+        return JmmNodeKinds.getName(kind[index]);
+    }
+
+    int getKindId(int index) {
+        return kind[index];
+    }
+
+    CompactJmmNode getParent(int index) {
+        return getNode(parent[index]);
+    }
+
+    // CHILDREN
+
+    int getNumChildren(int index) {
+        return childCount[index];
+    }
+
+    CompactJmmNode getChild(int index, int position) {
+        return getNode(childIndex[childStart[index] + position]);
+    }
+
+    /**
+     * Makes sure the children range of the node has room for the given number of children, moving it to the end of
+     * the children array if needed.
+     */
+    private void reserveChildren(int index, int extra) {
+        int start = childStart[index];
+        int count = childCount[index];
+
+        // Already at the end, only needs to grow the array
+        if (start + count == childTop) {
+            ensureChildCapacity(childTop + extra);
+            return;
+        }
+
+        ensureChildCapacity(childTop + count + extra);
+        System.arraycopy(childIndex, start, childIndex, childTop, count);
+        childStart[index] = childTop;
+        childTop += count;
+    }
+
+    private void ensureChildCapacity(int capacity) {
+        if (capacity > childIndex.length) {
+            childIndex = Arrays.copyOf(childIndex, Math.max(capacity, childIndex.length * 2));
+        }
+    }
+
+    private void appendChild(int index, int child) {
+        insertChild(index, child, childCount[index]);
+    }
+
+    void insertChild(int index, int child, int position) {
+        reserveChildren(index, 1);
+
+        int start = childStart[index];
+        int count = childCount[index];
+        System.arraycopy(childIndex, start + position, childIndex, start + position + 1, count - position);
+        childIndex[start + position] = child;
+        childCount[index]++;
+
+        if (start + count == childTop) {
+            childTop++;
+        }
+
+        parent[child] = index;
+    }
+
+    int removeChild(int index, int position) {
+        int start = childStart[index];
+        int count = childCount[index];
+        int child = childIndex[start + position];
+
+        System.arraycopy(childIndex, start + position + 1, childIndex, start + position, count - position - 1);
+        childCount[index]--;
+        if (start + count == childTop) {
+            childTop--;
+        }
+
+        parent[child] = NO_PARENT;
+        return child;
+    }
+
+    /**
+     *
+     * @return the index of the given node in this arena, copying it into the arena if it belongs somewhere else
+     */
+    int adopt(JmmNode node) {
+        if (node instanceof CompactJmmNode) {
+            CompactJmmNode compact = (CompactJmmNode) node;
+            if (compact.getArena() == this && parent[compact.getIndex()] == NO_PARENT) {
+                return compact.getIndex();
+            }
+        }
+
+        return copy(node);
+    }
+
+    // ATTRIBUTES
+
+    List<String> getAttributes(int index) {
+        List<String> attributes = new ArrayList<>(attrCount[index]);
+        int start = attrStart[index];
+        for (int i = start; i < start + attrCount[index]; i++) {
+            attributes.add(keyNames.get(attrKey[i]));
+        }
+        return attributes;
+    }
+
+    String get(int index, String attribute) {
+        Integer key = keyIds.get(attribute);
+        if (key == null) {
+            return null;
+        }
+
+        int start = attrStart[index];
+        for (int i = start; i < start + attrCount[index]; i++) {
+            if (attrKey[i] != key) {
+                continue;
+            }
+
+            if (attrValue[i] == null && (LINE.equals(attribute) || COL.equals(attribute))) {
+                // A position kept as an int
+                int position = LINE.equals(attribute) ? line[index] : col[index];
+                return position != NO_POSITION ? String.valueOf(position) : null;
+            }
+            return attrValue[i];
+        }
+        return null;
+    }
+
+    void put(int index, String attribute, String value) {
+        if (LINE.equals(attribute)) {
+            line[index] = isPosition(value) ? Integer.parseInt(value) : NO_POSITION;
+            value = line[index] != NO_POSITION ? null : value;
+        } else if (COL.equals(attribute)) {
+            col[index] = isPosition(value) ? Integer.parseInt(value) : NO_POSITION;
+            value = col[index] != NO_POSITION ? null : value;
+        }
+
+        int key = keyId(attribute);
+        value = value != null ? intern(value) : null;
+
+        int start = attrStart[index];
+        int count = attrCount[index];
+        for (int i = start; i < start + count; i++) {
+            if (attrKey[i] == key) {
+                attrValue[i] = value;
+                return;
+            }
+        }
+
+        // New attribute, move the range to the end if it cannot grow in place
+        if (start + count != attrTop) {
+            ensureAttrCapacity(attrTop + count + 1);
+            System.arraycopy(attrKey, start, attrKey, attrTop, count);
+            System.arraycopy(attrValue, start, attrValue, attrTop, count);
+            start = attrTop;
+            attrStart[index] = start;
+            attrTop += count;
+        } else {
+            ensureAttrCapacity(attrTop + 1);
+        }
+
+        attrKey[start + count] = key;
+        attrValue[start + count] = value;
+        attrCount[index]++;
+        attrTop++;
+    }
+
+    private void ensureAttrCapacity(int capacity) {
+        if (capacity > attrKey.length) {
+            int newCapacity = Math.max(capacity, attrKey.length * 2);
+            attrKey = Arrays.copyOf(attrKey, newCapacity);
+            attrValue = Arrays.copyOf(attrValue, newCapacity);
+        }
+    }
+
+    private static boolean isPosition(String value) {
+        if (value == null || value.isEmpty() || value.length() > 9) {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,6 +1,8 @@
 package pt.up.fe.comp.jmm.ast;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,12 +18,14 @@ import pt.up.fe.specs.util.SpecsCheck;
 public class JmmNodeImpl implements JmmNode {
 
     protected String kind;
+    private final int kindId;
     protected Map<String, String> attributes;
     protected List<JmmNode> children;
     private JmmNode parent;
 
     public JmmNodeImpl(String kind) {
         this.kind = kind;
+        this.kindId = JmmNodeKinds.getId(kind);
         this.children = new ArrayList<>();
         this.attributes = new LinkedHashMap<>();
     }
@@ -41,6 +45,11 @@ public class JmmNodeImpl implements JmmNode {
         return this.kind;
     }
 
+    @Override
+    public int getKindId() {
+        return this.kindId;
+    }
+
     @Override
     public List<String> getAttributes() {
         return new ArrayList<>(this.attributes.keySet());
@@ -65,6 +74,11 @@ public class JmmNodeImpl implements JmmNode {
         return this.children.size();
     }
 
+    @Override
+    public JmmNode getChild(int index) {
+        return this.children.get(index);
+    }
+
     @Override
     public void put(String attribute, String value) {
         this.attributes.put(attribute, value);
@@ -116,6 +130,52 @@ public class JmmNodeImpl implements JmmNode {
         return gson.fromJson(source, JmmNodeImpl.class);
     }
 
+    /**
+     * Converts any JmmNode tree into a tree of JmmNodeImpl instances.
+     * <p>
+     * Produces the same tree as a {@link #toJson()}/{@link #fromJson(String)} round-trip, but copies the nodes
+     * directly. The tree is walked with an explicit stack, so deep trees do not exhaust the call stack.
+     *
+     * @param root
+     * @return the copy of the given tree
+     */
+    public static JmmNodeImpl fromNode(JmmNode root) {
+        JmmNodeImpl rootCopy = copyNode(root);
+
+        Deque<JmmNode> sources = new ArrayDeque<>();
+        Deque<JmmNodeImpl> copies = new ArrayDeque<>();
+        sources.push(root);
+        copies.push(rootCopy);
+
+        while (!sources.isEmpty()) {
+            JmmNode source = sources.pop();
+            JmmNodeImpl copy = copies.pop();
+
+            List<JmmNode> children = source.getChildren();
+            JmmNodeImpl[] childCopies = new JmmNodeImpl[children.size()];
+            for (int i = 0; i < childCopies.length; i++) {
+                childCopies[i] = copyNode(children.get(i));
+                copy.add(childCopies[i]);
+            }
+
+            // Push in reverse order, so that children are expanded from first to last
+            for (int i = childCopies.length - 1; i >= 0; i--) {
+                sources.push(children.get(i));
+                copies.push(childCopies[i]);
+            }
+        }
+
+        return rootCopy;
+    }
+
+    private static JmmNodeImpl copyNode(JmmNode node) {
+        JmmNodeImpl copy = new JmmNodeImpl(node.getKind());
+        for (String attribute : node.getAttributes()) {
+            copy.put(attribute, node.get(attribute));
+        }
+        return copy;
+    }
+
     public void setParent(JmmNodeImpl parent) {
         this.parent = parent;
     }
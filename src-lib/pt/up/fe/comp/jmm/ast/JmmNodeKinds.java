@@ -0,0 +1,63 @@
+package pt.up.fe.comp.jmm.ast;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Gives each node kind (e.g. MethodDeclaration, ClassDeclaration, etc.) an int id, the same for all the node classes.
+ * <p>
+ * Ids are given in the order the kinds are first seen and never change, so they can index tables such as the visit
+ * methods of {@link AJmmVisitor}.
+ *
+ * @author COMP2021
+ *
+ */
+public final class JmmNodeKinds {
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static final List<String> NAMES = new CopyOnWriteArrayList<>();
+
+    private JmmNodeKinds() {
+    }
+
+    /**
+     *
+     * @param kind
+     * @return the id of the given kind, a new one if it was not seen before
+     */
+    public static int getId(String kind) {
+        Integer id = IDS.get(kind);
+        return id != null ? id : register(kind);
+    }
+
+    /**
+     *
+     * @param kinds
+     * @return the id of each of the given kinds
+     */
+    public static int[] getIds(String[] kinds) {
+        int[] ids = new int[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            ids[i] = getId(kinds[i]);
+        }
+        return ids;
+    }
+
+    /**
+     *
+     * @param id
+     * @return the kind with the given id
+     */
+    public static String getName(int id) {
+        return NAMES.get(id);
+    }
+
+    private static synchronized int register(String kind) {
+        return IDS.computeIfAbsent(kind, newKind -> {
+            NAMES.add(newKind);
+            return NAMES.size() - 1;
+        });
+    }
+}
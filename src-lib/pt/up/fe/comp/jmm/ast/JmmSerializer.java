@@ -1,37 +1,78 @@
 package pt.up.fe.comp.jmm.ast;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import pt.up.fe.comp.jmm.JmmNode;
 
-public class JmmSerializer implements JsonSerializer<JmmNode> {
+/**
+ * Writes a JmmNode as an object with its kind, attributes and children.
+ * <p>
+ * The tree is written with an explicit stack, so deep trees do not exhaust the call stack. To read the JSON back, see
+ * {@link JmmNode#fromJson(String)}.
+ */
+public class JmmSerializer extends TypeAdapter<JmmNode> {
 
-    private Type ListOfJmm = new TypeToken<List<JmmNode>>() {
-    }.getType();
+    @Override
+    public void write(JsonWriter out, JmmNode node) throws IOException {
+        if (node == null) {
+            out.nullValue();
+            return;
+        }
 
-    private Type MapOfAttrs = new TypeToken<Map<String, String>>() {
-    }.getType();
+        // Each node is written up to its children, and closed after the last one
+        Deque<JmmNode> nodes = new ArrayDeque<>();
+        Deque<Integer> nextChildren = new ArrayDeque<>();
+        writeStart(out, node);
+        nodes.push(node);
+        nextChildren.push(0);
+
+        while (!nodes.isEmpty()) {
+            var current = nodes.peek();
+            int nextChild = nextChildren.pop();
+
+            if (nextChild < current.getNumChildren()) {
+                nextChildren.push(nextChild + 1);
+
+                var child = current.getChild(nextChild);
+                writeStart(out, child);
+                nodes.push(child);
+                nextChildren.push(0);
+                continue;
+            }
+
+            out.endArray();
+            out.endObject();
+            nodes.pop();
+        }
+    }
+
+    private static void writeStart(JsonWriter out, JmmNode node) throws IOException {
+        out.beginObject();
+        out.name("kind").value(node.getKind());
 
-    @Override
-    public JsonElement serialize(JmmNode jsonElement, Type type, JsonSerializationContext jsonSerializationContext) {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.addProperty("kind", jsonElement.getKind());
         Map<String, String> attrs = new HashMap<>();
-        for (String attr : jsonElement.getAttributes()) {
-            attrs.put(attr, jsonElement.get(attr));
+        for (String attr : node.getAttributes()) {
+            attrs.put(attr, node.get(attr));
+        }
+        out.name("attributes").beginObject();
+        for (var attr : attrs.entrySet()) {
+            out.name(attr.getKey()).value(attr.getValue());
         }
-        jsonObject.add("attributes", jsonSerializationContext.serialize(attrs, this.MapOfAttrs));
-        jsonObject.add("children", jsonSerializationContext.serialize(jsonElement.getChildren(), this.ListOfJmm));
-        return jsonObject;
+        out.endObject();
+
+        out.name("children").beginArray();
     }
 
-}
\ No newline at end of file
+    @Override
+    public JmmNode read(JsonReader in) throws IOException {
+        throw new UnsupportedOperationException("Use JmmNode.fromJson() to read a JmmNode");
+    }
+}
@@ -13,7 +13,8 @@
 
 package pt.up.fe.comp.jmm.ast;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.function.BiFunction;
 
@@ -22,6 +23,9 @@ import pt.up.fe.specs.util.SpecsCheck;
 
 /**
  * Visitor that automatically applies a postorder, bottom-up traversal (first the children, then the current node).
+ * <p>
+ * The nodes being visited are kept in an explicit stack, so trees of any depth can be visited, and the children are
+ * not visited through {@link #visit(JmmNode, Object)}.
  * 
  * @author JBispo
  *
@@ -51,18 +55,30 @@ public class PostorderJmmVisitor<D, R> extends AJmmVisitor<D, R> {
     public R visit(JmmNode jmmNode, D data) {
         SpecsCheck.checkNotNull(jmmNode, () -> "Node should not be null");
 
-        var visit = getVisit(jmmNode.getKind());
+        // The nodes being visited are kept in a stack instead of the Java stack, so that deep trees can be visited
+        Deque<TraversalFrame<R>> stack = new ArrayDeque<>();
+        stack.push(new TraversalFrame<>(jmmNode, null));
 
-        List<R> childrenResults = new ArrayList<>();
+        while (true) {
+            var frame = stack.peek();
 
-        // Postorder: 1st visit each children
-        for (var child : jmmNode.getChildren()) {
-            childrenResults.add(visit(child, data));
-        }
-
-        // Postorder: then, visit the node
-        var nodeResult = visit.apply(jmmNode, data);
+            // Postorder: 1st visit each children
+            if (frame.hasNextChild()) {
+                var child = frame.nextChild();
+                SpecsCheck.checkNotNull(child, () -> "Node should not be null");
+                stack.push(new TraversalFrame<>(child, null));
+                continue;
+            }
 
-        return reduce.apply(nodeResult, childrenResults);
+            // Postorder: then, visit the node
+            stack.pop();
+            var node = frame.getNode();
+            var nodeResult = getVisit(node.getKindId()).apply(node, data);
+            var result = reduce.apply(nodeResult, frame.getChildrenResults());
+            if (stack.isEmpty()) {
+                return result;
+            }
+            stack.peek().getChildrenResults().add(result);
+        }
     }
 }
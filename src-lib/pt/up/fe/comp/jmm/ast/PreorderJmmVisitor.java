@@ -13,7 +13,8 @@
 
 package pt.up.fe.comp.jmm.ast;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.function.BiFunction;
 
@@ -22,6 +23,9 @@ import pt.up.fe.specs.util.SpecsCheck;
 
 /**
  * Visitor that automatically applies a preorder, top-down traversal (first current node, then children).
+ * <p>
+ * The nodes being visited are kept in an explicit stack, so trees of any depth can be visited, and the children are
+ * not visited through {@link #visit(JmmNode, Object)}.
  * 
  * @author JBispo
  *
@@ -51,17 +55,29 @@ public class PreorderJmmVisitor<D, R> extends AJmmVisitor<D, R> {
     public R visit(JmmNode jmmNode, D data) {
         SpecsCheck.checkNotNull(jmmNode, () -> "Node should not be null");
 
-        var visit = getVisit(jmmNode.getKind());
+        // The nodes being visited are kept in a stack instead of the Java stack, so that deep trees can be visited
+        Deque<TraversalFrame<R>> stack = new ArrayDeque<>();
 
         // Preorder: 1st visit the node
-        var nodeResult = visit.apply(jmmNode, data);
+        stack.push(new TraversalFrame<>(jmmNode, getVisit(jmmNode.getKindId()).apply(jmmNode, data)));
 
-        // Preorder: then, visit each children
-        List<R> childrenResults = new ArrayList<>();
-        for (var child : jmmNode.getChildren()) {
-            childrenResults.add(visit(child, data));
-        }
+        while (true) {
+            var frame = stack.peek();
+
+            // Preorder: then, visit each children
+            if (frame.hasNextChild()) {
+                var child = frame.nextChild();
+                SpecsCheck.checkNotNull(child, () -> "Node should not be null");
+                stack.push(new TraversalFrame<>(child, getVisit(child.getKindId()).apply(child, data)));
+                continue;
+            }
 
-        return reduce.apply(nodeResult, childrenResults);
+            stack.pop();
+            var result = reduce.apply(frame.getNodeResult(), frame.getChildrenResults());
+            if (stack.isEmpty()) {
+                return result;
+            }
+            stack.peek().getChildrenResults().add(result);
+        }
     }
 }
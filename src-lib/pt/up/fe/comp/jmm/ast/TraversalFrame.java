@@ -0,0 +1,48 @@
+package pt.up.fe.comp.jmm.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pt.up.fe.comp.jmm.JmmNode;
+
+/**
+ * A node in the explicit stack of {@link PreorderJmmVisitor} and {@link PostorderJmmVisitor}, with the results of the
+ * children visited so far.
+ *
+ * @param <R>
+ *            the result of the visits
+ */
+class TraversalFrame<R> {
+
+    private final JmmNode node;
+    private final R nodeResult;
+    private final List<R> childrenResults;
+    private int nextChild;
+
+    TraversalFrame(JmmNode node, R nodeResult) {
+        this.node = node;
+        this.nodeResult = nodeResult;
+        this.childrenResults = new ArrayList<>(node.getNumChildren());
+        this.nextChild = 0;
+    }
+
+    JmmNode getNode() {
+        return node;
+    }
+
+    R getNodeResult() {
+        return nodeResult;
+    }
+
+    List<R> getChildrenResults() {
+        return childrenResults;
+    }
+
+    boolean hasNextChild() {
+        return nextChild < node.getNumChildren();
+    }
+
+    JmmNode nextChild() {
+        return node.getChild(nextChild++);
+    }
+}
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -65,9 +66,16 @@ public class JasminResult {
      * @return a reference to the .class file
      */
     public File compile(File outputDir) {
-        File jasminFile = new File(SpecsIo.getTempFolder("jasmin"), getClassName() + ".j");
-        SpecsIo.write(jasminFile, getJasminCode());
-        return JasminUtils.assemble(jasminFile, outputDir);
+        return JasminUtils.assemble(new StringReader(getJasminCode()), getClassName() + ".j", outputDir);
+    }
+
+    /**
+     * Compiles the generated Jasmin code using the Jasmin tool, without writing any file.
+     * 
+     * @return the contents of the class file
+     */
+    public byte[] compileToBytes() {
+        return JasminUtils.assembleToBytes(new StringReader(getJasminCode()), getClassName() + ".j");
     }
 
     /**
@@ -85,7 +93,10 @@ public class JasminResult {
     }
 
     /**
-     * Compiles and runs the current Jasmin code.
+     * Compiles and runs the current Jasmin code in this JVM, without writing the class file.
+     * <p>
+     * A program that does not finish before the timeout cannot be stopped and keeps running in this JVM, see
+     * {@link JasminRunner}. Programs that may not terminate should use {@link #runInNewJvm} instead.
      * 
      * @param args
      *            arguments for the Jasmin program
@@ -97,6 +108,29 @@ public class JasminResult {
      * @return the output that is printed by the Jasmin program
      */
     public String run(List<String> args, List<String> classpath, String input) {
+        // Each line is given as it would be typed, including the last one
+        String lines = null;
+        if (input != null && !input.isEmpty()) {
+            lines = String.join("\n", StringLines.getLines(input)) + "\n";
+        }
+
+        var runner = new JasminRunner(getClassName(), compileToBytes(), classpath);
+        return runner.run(args, lines, TIMEOUT_NS);
+    }
+
+    /**
+     * Compiles and runs the current Jasmin code in a new java process.
+     * 
+     * @param args
+     *            arguments for the Jasmin program
+     * @param classpath
+     *            additional paths for the classpath
+     * @param input
+     *            input to give to the program that will run
+     * 
+     * @return the output that is printed by the Jasmin program
+     */
+    public String runInNewJvm(List<String> args, List<String> classpath, String input) {
         // Compile
         var classFile = compile();
 
@@ -0,0 +1,333 @@
+package pt.up.fe.comp.jmm.jasmin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a compiled class in the current JVM.
+ * <p>
+ * The class is loaded by a new class loader, together with the classes in the given classpath, so each run starts
+ * with fresh static fields. System.in, System.out and System.err are redirected while the program runs, so only one
+ * program runs at a time. The threads of the program use its input and output, any other thread keeps using the
+ * streams there were before.
+ * <p>
+ * A program that does not finish before the timeout cannot be stopped: its thread is interrupted, which does not end
+ * a busy loop, and abandoned. It keeps running until it ends or the JVM exits, reading no more input and with its
+ * output discarded, and its class loader is only closed when it ends. Programs that may not terminate should be run
+ * in a new process instead (see {@link JasminResult#runInNewJvm}).
+ *
+ * @author COMP2021
+ *
+ */
+public class JasminRunner {
+
+    private static final Object LOCK = new Object();
+
+    private final String className;
+    private final byte[] classBytes;
+    private final List<String> classpath;
+
+    /**
+     * @param className
+     *            the name of the class, as in the Jasmin code (e.g. "pt/up/Foo")
+     * @param classBytes
+     *            the contents of the class file
+     * @param classpath
+     *            additional paths for the classpath
+     */
+    public JasminRunner(String className, byte[] classBytes, List<String> classpath) {
+        this.className = className.replace('/', '.');
+        this.classBytes = classBytes;
+        this.classpath = classpath;
+    }
+
+    /**
+     * Runs the main method of the class.
+     *
+     * @param args
+     *            arguments for the program
+     * @param input
+     *            input to give to the program, can be null
+     * @param timeoutNs
+     *            time given to the program
+     * @return the output of the program, followed by the error output if there is any
+     */
+    public String run(List<String> args, String input, long timeoutNs) {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        synchronized (LOCK) {
+            InputStream previousIn = System.in;
+            PrintStream previousOut = System.out;
+            PrintStream previousErr = System.err;
+
+            ThreadGroup group = new ThreadGroup("program");
+            ProgramOutputStream programOut = new ProgramOutputStream(group, stdout, previousOut);
+            ProgramOutputStream programErr = new ProgramOutputStream(group, stderr, previousErr);
+            byte[] inputBytes = input == null ? new byte[0] : input.getBytes(StandardCharsets.UTF_8);
+            ProgramInputStream programIn = new ProgramInputStream(group, new LineInputStream(inputBytes), previousIn);
+
+            PrintStream err = new PrintStream(stderr, true);
+            URLClassLoader classLoader = new ProgramClassLoader(className, classBytes, getUrls(classpath));
+            Thread program = null;
+            try {
+                Method main = classLoader.loadClass(className).getMethod("main", String[].class);
+                // Classes generated from Jasmin are not public
+                main.setAccessible(true);
+
+                System.setIn(programIn);
+                System.setOut(new PrintStream(programOut, true));
+                System.setErr(new PrintStream(programErr, true));
+
+                program = new Thread(group, () -> {
+                    try {
+                        main.invoke(null, (Object) args.toArray(new String[0]));
+                    } catch (InvocationTargetException e) {
+                        err.print("Exception in thread \"main\" ");
+                        e.getCause().printStackTrace(err);
+                    } catch (IllegalAccessException e) {
+                        e.printStackTrace(err);
+                    }
+                }, "main");
+                program.setDaemon(true);
+                program.start();
+                program.join(TimeUnit.NANOSECONDS.toMillis(timeoutNs));
+
+                if (program.isAlive()) {
+                    program.interrupt();
+                    err.println("Program did not finish in " + TimeUnit.NANOSECONDS.toMillis(timeoutNs) + " ms");
+                }
+            } catch (ReflectiveOperationException | LinkageError e) {
+                e.printStackTrace(err);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (program == null || !program.isAlive()) {
+                    System.setIn(previousIn);
+                    System.setOut(previousOut);
+                    System.setErr(previousErr);
+                    close(classLoader);
+                } else {
+                    // The streams stay, so that the program does not write to the ones of this JVM, and the classes
+                    // it has not loaded yet stay available until it ends
+                    programIn.abandon();
+                    programOut.abandon();
+                    programErr.abandon();
+                    closeWhenFinished(program, classLoader);
+                }
+            }
+        }
+
+        String out = stdout.toString();
+        String errOut = stderr.toString();
+        if (errOut.isEmpty()) {
+            return out;
+        }
+
+        return out.isEmpty() || out.endsWith("\n") ? out + errOut : out + "\n" + errOut;
+    }
+
+    private static void close(URLClassLoader classLoader) {
+        try {
+            classLoader.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not close the class loader", e);
+        }
+    }
+
+    private static void closeWhenFinished(Thread program, URLClassLoader classLoader) {
+        Thread closer = new Thread(() -> {
+            try {
+                program.join();
+                classLoader.close();
+            } catch (InterruptedException | IOException e) {
+                // The class loader is left to the garbage collector
+            }
+        }, "program-closer");
+        closer.setDaemon(true);
+        closer.start();
+    }
+
+    private static URL[] getUrls(List<String> classpath) {
+        URL[] urls = new URL[classpath.size()];
+        for (int i = 0; i < urls.length; i++) {
+            try {
+                urls[i] = new File(classpath.get(i)).toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw new RuntimeException("Invalid classpath element: " + classpath.get(i), e);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Defines the compiled class from memory and looks for the others in the classpath, without delegating to the
+     * classes of the compiler.
+     */
+    private static class ProgramClassLoader extends URLClassLoader {
+        private final String className;
+        private final byte[] classBytes;
+
+        ProgramClassLoader(String className, byte[] classBytes, URL[] classpath) {
+            super(classpath, ClassLoader.getPlatformClassLoader());
+            this.className = className;
+            this.classBytes = classBytes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (name.equals(className)) {
+                return defineClass(name, classBytes, 0, classBytes.length);
+            }
+            return super.findClass(name);
+        }
+    }
+
+    /**
+     * Writes to the output of the program when called by one of its threads, and to the previous output otherwise.
+     */
+    private static class ProgramOutputStream extends OutputStream {
+        private final ThreadGroup program;
+        private final OutputStream programOut;
+        private final OutputStream previousOut;
+        private volatile boolean abandoned;
+
+        ProgramOutputStream(ThreadGroup program, OutputStream programOut, OutputStream previousOut) {
+            this.program = program;
+            this.programOut = programOut;
+            this.previousOut = previousOut;
+        }
+
+        /**
+         * Discards what the program writes from now on
+         */
+        void abandon() {
+            abandoned = true;
+        }
+
+        private OutputStream target() {
+            if (!program.parentOf(Thread.currentThread().getThreadGroup())) {
+                return previousOut;
+            }
+            return abandoned ? OutputStream.nullOutputStream() : programOut;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+
+    /**
+     * Reads from the input of the program when called by one of its threads, and from the previous input otherwise.
+     */
+    private static class ProgramInputStream extends InputStream {
+        private final ThreadGroup program;
+        private final InputStream programIn;
+        private final InputStream previousIn;
+        private volatile boolean abandoned;
+
+        ProgramInputStream(ThreadGroup program, InputStream programIn, InputStream previousIn) {
+            this.program = program;
+            this.programIn = programIn;
+            this.previousIn = previousIn;
+        }
+
+        /**
+         * Gives the program no more input from now on
+         */
+        void abandon() {
+            abandoned = true;
+        }
+
+        private InputStream source() {
+            if (!program.parentOf(Thread.currentThread().getThreadGroup())) {
+                return previousIn;
+            }
+            return abandoned ? InputStream.nullInputStream() : programIn;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return source().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return source().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return source().available();
+        }
+    }
+
+    /**
+     * Gives the input one line at a time, as if typed by a person.
+     * <p>
+     * The libraries create a new reader for each read and would otherwise buffer the remaining lines, which is why
+     * the input was given with a delay between lines when running in a new process.
+     */
+    private static class LineInputStream extends InputStream {
+        private final byte[] input;
+        private int position;
+
+        LineInputStream(byte[] input) {
+            this.input = input;
+        }
+
+        @Override
+        public int read() {
+            return position < input.length ? input[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= input.length) {
+                return -1;
+            }
+
+            int count = 0;
+            while (count < len && position < input.length) {
+                byte value = input[position++];
+                b[off + count++] = value;
+                if (value == '\n') {
+                    break;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            // Readers stop asking for more once a line is read
+            return 0;
+        }
+    }
+}
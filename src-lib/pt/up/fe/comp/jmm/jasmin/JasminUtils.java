@@ -1,11 +1,13 @@
 package pt.up.fe.comp.jmm.jasmin;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 
 import jas.jasError;
 import jasmin.ClassFile;
@@ -16,68 +18,146 @@ import jasmin.ClassFile;
  *
  */
 public class JasminUtils {
+    /**
+     * The Jasmin scanner keeps the size of its buffer in a static field, so only one class is read at a time
+     */
+    private static final Object JASMIN_LOCK = new Object();
+
     /**
      * Extracted from Jasmin code
      */
     public static File assemble(File inputFile, File outputDir) {
 
         try (FileInputStream fs = new FileInputStream(inputFile);
-                InputStreamReader ir = new InputStreamReader(fs);
-                BufferedReader inp = new BufferedReader(ir);) {
+                InputStreamReader ir = new InputStreamReader(fs)) {
 
-            ClassFile classFile = new ClassFile();
-            classFile.readJasmin(inp, inputFile.getName(), true);
+            return assemble(ir, inputFile.getName(), outputDir);
+        } catch (java.io.FileNotFoundException e) {
+            throw new RuntimeException("Class could not be created: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while assembling Jasmin file", e);
+        }
+    }
 
-            // if we got some errors, don't output a file - just return.
-            if (classFile.errorCount() > 0) {
-                throw new RuntimeException("Found "
-                        + classFile.errorCount() + " errors while compiling Jasmin code.");
+    /**
+     * Assembles Jasmin code read from the given reader, without the need for a Jasmin file.
+     * 
+     * @param input
+     *            the Jasmin code
+     * @param sourceName
+     *            name of the source of the code, used in error messages
+     * @param outputDir
+     *            the folder where the class file will be written
+     * @return a reference to the .class file
+     */
+    public static File assemble(Reader input, String sourceName, File outputDir) {
+        ClassFile classFile = readJasmin(input, sourceName);
+        return writeClass(classFile.getClassName(), toBytes(classFile), outputDir);
+    }
 
-            }
+    /**
+     * Assembles Jasmin code in memory.
+     * 
+     * @param input
+     *            the Jasmin code
+     * @return the contents of the class file
+     */
+    public static byte[] assembleToBytes(Reader input) {
+        return assembleToBytes(input, "<memory>");
+    }
 
-            String class_path[] = (splitClassField(
-                    classFile.getClassName()));
-            String class_name = class_path[1];
+    /**
+     * Assembles Jasmin code in memory.
+     * 
+     * @param input
+     *            the Jasmin code
+     * @param sourceName
+     *            name of the source of the code, used in error messages
+     * @return the contents of the class file
+     */
+    public static byte[] assembleToBytes(Reader input, String sourceName) {
+        return toBytes(readJasmin(input, sourceName));
+    }
 
-            // determine where to place this class file
-            // String dest_dir = dest_path;
-            if (class_path[0] != null) {
-                String class_dir = convertChars(
-                        class_path[0], "./",
-                        File.separatorChar);
-                outputDir = new File(outputDir, class_dir);
+    private static ClassFile readJasmin(Reader input, String sourceName) {
 
+        try (BufferedReader inp = new BufferedReader(input)) {
+
+            ClassFile classFile = new ClassFile();
+            synchronized (JASMIN_LOCK) {
+                classFile.readJasmin(inp, sourceName, true);
             }
-            // iocause = class_name + ".class: file can't be created";
-            // if (dest_dir == null) {
-            // out_file = new File(class_name + ".class");
-            // } else {
-            File out_file = new File(outputDir, class_name + ".class");
 
-            // check that dest_dir exists
+            // if we got some errors, don't output a file - just return.
+            if (classFile.errorCount() > 0) {
+                throw new RuntimeException("Found "
+                        + classFile.errorCount() + " errors while compiling Jasmin code.");
 
-            if (!outputDir.exists()) {
-                outputDir.mkdirs();
             }
 
-            if (!outputDir.isDirectory()) {
-                throw new IOException(
-                        "Cannot create directory: " + outputDir.getAbsolutePath() + " is not a directory.");
-            }
+            return classFile;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Exception while assembling Jasmin file", e);
+        }
+    }
 
-            try (FileOutputStream outp = new FileOutputStream(out_file);) {
-                classFile.write(outp);
-            }
-            // System.out.println("Generated: " + out_file.getPath());
-            return out_file;
-        } catch (java.io.FileNotFoundException e) {
-            throw new RuntimeException("Class could not be created: " + e.getMessage(), e);
+    private static byte[] toBytes(ClassFile classFile) {
+        try {
+            ByteArrayOutputStream outp = new ByteArrayOutputStream();
+            classFile.write(outp);
+            return outp.toByteArray();
         } catch (jasError e) {
             throw new RuntimeException("JAS Error: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Exception while assembling Jasmin file", e);
         }
+    }
 
+    /**
+     * Writes an assembled class to the folder corresponding to its package.
+     * 
+     * @param className
+     *            the name of the class, as in the Jasmin code (e.g. "java/lang/Object")
+     * @param classBytes
+     *            the contents of the class file
+     * @param outputDir
+     *            the root folder of the class files
+     * @return a reference to the .class file
+     */
+    public static File writeClass(String className, byte[] classBytes, File outputDir) {
+        String class_path[] = (splitClassField(className));
+        String class_name = class_path[1];
+
+        // determine where to place this class file
+        if (class_path[0] != null) {
+            String class_dir = convertChars(
+                    class_path[0], "./",
+                    File.separatorChar);
+            outputDir = new File(outputDir, class_dir);
+
+        }
+        File out_file = new File(outputDir, class_name + ".class");
+
+        // check that dest_dir exists
+
+        if (!outputDir.exists()) {
+            outputDir.mkdirs();
+        }
+
+        if (!outputDir.isDirectory()) {
+            throw new RuntimeException(
+                    "Cannot create directory: " + outputDir.getAbsolutePath() + " is not a directory.");
+        }
+
+        try (FileOutputStream outp = new FileOutputStream(out_file);) {
+            outp.write(classBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Class could not be created: " + e.getMessage(), e);
+        }
+        // System.out.println("Generated: " + out_file.getPath());
+        return out_file;
     }
 
     //
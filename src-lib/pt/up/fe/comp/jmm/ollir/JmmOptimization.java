@@ -40,6 +40,20 @@ public interface JmmOptimization {
         return toOllir(semanticsResult);
     }
 
+    /**
+     * Step 2 (for CP2): convert the AST to the OLLIR format
+     * 
+     * Overload that builds the OLLIR class in memory instead of parsing the generated OLLIR code, which is only
+     * generated when {@link OllirResult#getOllirCode()} is called. By default, it is the same as
+     * {@link #toOllir(JmmSemanticsResult)}.
+     * 
+     * @param semanticsResult
+     * @return
+     */
+    default OllirResult toOllirClass(JmmSemanticsResult semanticsResult) {
+        return toOllir(semanticsResult);
+    }
+
     /**
      * Step 3 (for CP3): otimize code at the OLLIR level
      * 
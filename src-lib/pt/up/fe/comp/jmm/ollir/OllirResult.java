@@ -2,6 +2,7 @@ package pt.up.fe.comp.jmm.ollir;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.specs.comp.ollir.ClassUnit;
 
@@ -12,10 +13,13 @@ import pt.up.fe.specs.util.SpecsCollections;
 
 /**
  * An OLLIR result returns the parsed OLLIR code and the corresponding symbol table.
+ * <p>
+ * The OLLIR class can also be built directly, in which case the OLLIR code is only generated when requested.
  */
 public class OllirResult {
 
-    private final String ollirCode;
+    private String ollirCode;
+    private Supplier<String> ollirCodeSupplier;
     private final ClassUnit ollirClass;
     private final SymbolTable symbolTable;
     private final List<Report> reports;
@@ -46,7 +50,27 @@ public class OllirResult {
                 SpecsCollections.concat(semanticsResult.getReports(), reports));
     }
 
+    /**
+     * Creates a new instance from the analysis stage results and an OLLIR class that was built directly.
+     * 
+     * @param semanticsResult
+     * @param ollirClass
+     * @param ollirCode
+     *            generates the OLLIR code of the class, only called if the code is requested
+     * @param reports
+     */
+    public OllirResult(JmmSemanticsResult semanticsResult, ClassUnit ollirClass, Supplier<String> ollirCode,
+            List<Report> reports) {
+        this(null, ollirClass, semanticsResult.getSymbolTable(),
+                SpecsCollections.concat(semanticsResult.getReports(), reports));
+        this.ollirCodeSupplier = ollirCode;
+    }
+
     public String getOllirCode() {
+        if (ollirCode == null && ollirCodeSupplier != null) {
+            ollirCode = ollirCodeSupplier.get();
+            ollirCodeSupplier = null;
+        }
         return ollirCode;
     }
 
@@ -1,6 +1,7 @@
 import ast.JmmExpressionAnalyser;
 import ast.JmmSemanticPreorderVisitor;
 import ast.JmmSymbolTable;
+import ast.ParallelMethodAnalysis;
 import ast.SymbolTableVisitor;
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.JmmNode;
@@ -11,11 +12,35 @@ import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class AnalysisStage implements JmmAnalysis {
+    private final PrintStream log;
+    private final boolean parallel;
+
+    public AnalysisStage() {
+        this(System.out);
+    }
+
+    /**
+     * @param log where the progress of the stage is printed
+     */
+    public AnalysisStage(PrintStream log) {
+        this(log, false);
+    }
+
+    /**
+     * @param log       where the progress of the stage is printed
+     * @param parallel  if true, the methods are analysed in parallel on the common fork-join pool, with the same reports
+     */
+    public AnalysisStage(PrintStream log, boolean parallel) {
+        this.log = log;
+        this.parallel = parallel;
+    }
 
     /**
      * Executes the Semantic Analysis on a JMMParserResult
@@ -43,15 +68,20 @@ public class AnalysisStage implements JmmAnalysis {
         JmmSymbolTable table = new JmmSymbolTable();
         List<Report> reports = new ArrayList<>();
 
-        System.out.println("Visitor - Filling Symbol Table...");
+        log.println("Visitor - Filling Symbol Table...");
         SymbolTableVisitor visitor = new SymbolTableVisitor(table, reports);
         visitor.visit(node, "");
-        System.out.println("Symbol Table Filled!");
+        log.println("Symbol Table Filled!");
 
-        System.out.println("Visitor - Semantic Analysis...");
-        JmmExpressionAnalyser expressionsAnalyser = new JmmExpressionAnalyser(table, reports);
-        expressionsAnalyser.visit(node, null);
-        System.out.println("Semantic Analysis Done!");
+        log.println("Visitor - Semantic Analysis...");
+        if (parallel) {
+            new ParallelMethodAnalysis(table, ForkJoinPool.commonPool()).analyse(node, reports);
+        } else {
+            JmmExpressionAnalyser expressionsAnalyser = new JmmExpressionAnalyser(table, reports);
+            expressionsAnalyser.visit(node, null);
+            expressionsAnalyser.saveInitializedVariables();
+        }
+        log.println("Semantic Analysis Done!");
 
         return new JmmSemanticsResult(parserResult, table, reports);
     }
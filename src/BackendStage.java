@@ -1,15 +1,22 @@
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import ast.JasminGenerator;
+import ast.RegisterAllocator;
+import ast.exceptions.StackHeightMismatch;
 import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
 import org.specs.comp.ollir.OllirErrorException;
 
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.specs.util.SpecsIo;
 
@@ -27,9 +34,58 @@ import pt.up.fe.specs.util.SpecsIo;
  */
 
 public class BackendStage implements JasminBackend {
+    /** Value of registers to keep one register per variable */
+    public static final int NO_ALLOCATION = -1;
+
+    private final boolean debug;
+    private final int registers;
+
+    public BackendStage() {
+        this(true);
+    }
+
+    /**
+     * @param debug if true, the CFGs are written to .dot files in the working directory and the OLLIR class is printed
+     */
+    public BackendStage(boolean debug) {
+        this(debug, NO_ALLOCATION);
+    }
+
+    /**
+     * @param debug     if true, the CFGs are written to .dot files in the working directory and the OLLIR class is printed
+     * @param registers maximum number of registers of each method, with variables sharing registers when they are not
+     *                  live at the same time, 0 to use as few as possible without a maximum, or {@link #NO_ALLOCATION}.
+     *                  The maximum does not change the allocation, it is only checked afterwards: a method whose
+     *                  allocation uses more registers is reported with the number it uses
+     */
+    public BackendStage(boolean debug, int registers) {
+        this.debug = debug;
+        this.registers = registers;
+    }
 
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
+        StringBuilder jasminCode = new StringBuilder();
+        List<Report> reports = toJasmin(ollirResult, jasminCode);
+
+        if (!reports.isEmpty()) {
+            return new JasminResult(ollirResult.getOllirClass().getClassName(), null, reports);
+        }
+
+        return new JasminResult(ollirResult, jasminCode.toString(), reports);
+    }
+
+    /**
+     * Converts the OLLIR to Jasmin, writing the code to the given output as it is generated, one method at a time.
+     * <p>
+     * If an ERROR report is returned, the output is not a valid class: it may hold the methods written before the
+     * error and must be discarded.
+     *
+     * @param ollirResult
+     * @param out
+     * @return the reports of this stage
+     */
+    public List<Report> toJasmin(OllirResult ollirResult, Appendable out) {
         ClassUnit ollirClass = ollirResult.getOllirClass();
 
         try {
@@ -37,23 +93,48 @@ public class BackendStage implements JasminBackend {
             // Example of what you can do with the OLLIR class
             ollirClass.checkMethodLabels(); // check the use of labels in the OLLIR loaded
             ollirClass.buildCFGs(); // build the CFG of each method
-            ollirClass.outputCFGs(); // output to .dot files the CFGs, one per method
+            if (debug) ollirClass.outputCFGs(); // output to .dot files the CFGs, one per method
             ollirClass.buildVarTables(); // build the table of variables for each method
-            ollirClass.show(); // print to console main information about the input OLLIR
+            if (debug) ollirClass.show(); // print to console main information about the input OLLIR
 
-            // Convert the OLLIR to a String containing the equivalent Jasmin code
-            String jasminCode = new JasminGenerator(ollirClass).dealWithClass();
+            Map<Method, Integer> methodRegisters = new IdentityHashMap<>();
+            if (registers != NO_ALLOCATION) {
+                List<Report> reports = allocateRegisters(ollirClass, methodRegisters);
+                if (!reports.isEmpty()) return reports;
+            }
 
-            // More reports from this stage
-            List<Report> reports = new ArrayList<>();
+            // Convert the OLLIR to the equivalent Jasmin code
+            new JasminGenerator(ollirClass, methodRegisters).dealWithClass(out);
 
-            return new JasminResult(ollirResult, jasminCode, reports);
+            // More reports from this stage
+            return new ArrayList<>();
 
         } catch (OllirErrorException e) {
-            return new JasminResult(ollirClass.getClassName(), null,
-                    Arrays.asList(Report.newError(Stage.GENERATION, -1, -1, "Exception during Jasmin generation", e)));
+            return Arrays.asList(Report.newError(Stage.GENERATION, -1, -1, "Exception during Jasmin generation", e));
+        } catch (IOException e) {
+            return Arrays.asList(Report.newError(Stage.GENERATION, -1, -1, "Could not write the Jasmin code", e));
+        } catch (StackHeightMismatch e) {
+            return Arrays.asList(Report.newError(Stage.GENERATION, -1, -1, "Invalid Jasmin code", e));
         }
+    }
 
+    /**
+     * Gives the variables of each method their registers, filling the number of registers of each method
+     * @return an error for each method that needs more registers than allowed
+     */
+    private List<Report> allocateRegisters(ClassUnit ollirClass, Map<Method, Integer> methodRegisters) {
+        List<Report> reports = new ArrayList<>();
+        for (Method method : ollirClass.getMethods()) {
+            if (method.isConstructMethod()) continue;
+
+            int used = new RegisterAllocator(method).allocate();
+            methodRegisters.put(method, used);
+            if (registers > 0 && used > registers) {
+                reports.add(new Report(ReportType.ERROR, Stage.GENERATION, -1, -1, "Method " + method.getMethodName()
+                        + " needs " + used + " registers, more than the " + registers + " allowed"));
+            }
+        }
+        return reports;
     }
 
 }
@@ -0,0 +1,296 @@
+import pt.up.fe.comp.jmm.JmmParserResult;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles several Java-- files in parallel, on a fixed number of threads.
+ * <p>
+ * Each file goes through all the stages on its own thread, with the progress of the stages kept in a log per file,
+ * and its outputs are written as in {@link Main}.
+ */
+public class BatchCompiler {
+	private static final String[] STAGES = {"parse", "analysis", "ollir", "jasmin", "assemble"};
+
+	private final int threads;
+	private final Path outputDir;
+	private final boolean optimize;
+	private final int registers;
+
+	/**
+	 * @param threads 		maximum number of files compiled at the same time
+	 * @param outputDir 	folder where the outputs of each file are written, or null to not write them
+	 */
+	public BatchCompiler(int threads, Path outputDir) {
+		this(threads, outputDir, false, BackendStage.NO_ALLOCATION);
+	}
+
+	/**
+	 * @param threads 		maximum number of files compiled at the same time
+	 * @param outputDir 	folder where the outputs of each file are written, or null to not write them
+	 * @param optimize 		if true, the AST of each file is optimized before it is converted to OLLIR
+	 * @param registers 	maximum number of registers of each method, see {@link BackendStage#BackendStage(boolean, int)}
+	 */
+	public BatchCompiler(int threads, Path outputDir, boolean optimize, int registers) {
+		this.threads = threads;
+		this.outputDir = outputDir;
+		this.optimize = optimize;
+		this.registers = registers;
+	}
+
+	/**
+	 * Usage: [-j=threads] [-d=outputDir] [-o] [-r=registers] (file.jmm | folder)...
+	 * <p>
+	 * -r=registers allocates the registers of each method and then fails for the methods that use more than the given
+	 * number, it does not try harder to fit them
+	 */
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		Path outputDir = Paths.get("");
+		boolean optimize = false;
+		int registers = BackendStage.NO_ALLOCATION;
+		List<File> files = new ArrayList<>();
+
+		for (String arg : args) {
+			if (arg.startsWith("-j=")) {
+				threads = Integer.parseInt(arg.substring(3));
+			} else if (arg.startsWith("-d=")) {
+				outputDir = Paths.get(arg.substring(3));
+			} else if (arg.equals("-o")) {
+				optimize = true;
+			} else if (arg.startsWith("-r=")) {
+				registers = Integer.parseInt(arg.substring(3));
+			} else {
+				files.addAll(findSources(new File(arg)));
+			}
+		}
+
+		long start = System.nanoTime();
+		List<UnitResult> results = new BatchCompiler(threads, outputDir, optimize, registers).compile(files);
+		long wallTime = System.nanoTime() - start;
+
+		System.out.println(summary(results, wallTime, threads));
+
+		boolean failed = results.stream().anyMatch(result -> !result.isSuccess());
+		if (failed) System.exit(1);
+	}
+
+	/**
+	 * @return the .jmm files in the given folder and its sub-folders, or the file itself if it is not a folder
+	 */
+	public static List<File> findSources(File source) throws IOException {
+		if (!source.isDirectory()) return Collections.singletonList(source);
+
+		try (Stream<Path> paths = Files.walk(source.toPath())) {
+			return paths.filter(path -> path.toString().endsWith(".jmm"))
+					.sorted()
+					.map(Path::toFile)
+					.collect(Collectors.toList());
+		}
+	}
+
+	/**
+	 * Compiles the given files in parallel
+	 * @return the result of each file, in the same order
+	 */
+	public List<UnitResult> compile(List<File> files) {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+
+		try {
+			List<Callable<UnitResult>> tasks = new ArrayList<>();
+			for (File file : files) {
+				tasks.add(() -> compile(file));
+			}
+
+			List<UnitResult> results = new ArrayList<>();
+			for (Future<UnitResult> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Compilation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Unexpected error in compilation", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private UnitResult compile(File file) {
+		UnitResult result = new UnitResult(file);
+		ByteArrayOutputStream logBytes = new ByteArrayOutputStream();
+		PrintStream log = new PrintStream(logBytes, true);
+
+		try {
+			String code = Files.readString(file.toPath());
+
+			long start = System.nanoTime();
+			JmmParserResult parserResult = new Main().parse(code);
+			start = result.time(0, start);
+			if (result.addReports(parserResult.getReports())) return result;
+
+			JmmSemanticsResult semanticsResult = new AnalysisStage(log).semanticAnalysis(parserResult);
+			start = result.time(1, start);
+			if (result.addReports(semanticsResult.getReports())) return result;
+
+			OptimizationStage optimization = new OptimizationStage(log);
+			if (optimize) {
+				semanticsResult = optimization.optimize(semanticsResult);
+			}
+			OllirResult ollirResult = optimization.toOllirClass(semanticsResult);
+			start = result.time(2, start);
+
+			JasminResult jasminResult = new BackendStage(false, registers).toJasmin(ollirResult);
+			start = result.time(3, start);
+			if (result.addReports(jasminResult.getReports())) return result;
+
+			byte[] classBytes = jasminResult.compileToBytes();
+			result.time(4, start);
+
+			result.className = jasminResult.getClassName();
+			if (outputDir != null) {
+				Main.writeOutputs(parserResult, ollirResult, jasminResult, classBytes, outputDir);
+			}
+		} catch (Exception e) {
+			result.exception = e;
+		} finally {
+			result.log = logBytes.toString();
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return one line per file and the total time of each stage
+	 */
+	public static String summary(List<UnitResult> results, long wallTimeNs, int threads) {
+		StringBuilder summary = new StringBuilder();
+		long[] totals = new long[STAGES.length];
+		int failed = 0;
+
+		for (UnitResult result : results) {
+			summary.append(result).append("\n");
+			for (int i = 0; i < STAGES.length; i++) {
+				totals[i] += result.stageTimes[i];
+			}
+			if (!result.isSuccess()) failed++;
+		}
+
+		summary.append(String.format("%d files, %d failed, %d ms on %d threads%n", results.size(), failed,
+				wallTimeNs / 1_000_000, threads));
+		summary.append("Total time per stage:");
+		for (int i = 0; i < STAGES.length; i++) {
+			summary.append(String.format(" %s %d ms", STAGES[i], totals[i] / 1_000_000));
+		}
+
+		return summary.toString();
+	}
+
+	/**
+	 * The outcome of the compilation of one file
+	 */
+	public static class UnitResult {
+		private final File file;
+		private final long[] stageTimes = new long[STAGES.length];
+		private final List<Report> reports = new ArrayList<>();
+		private String className;
+		private Exception exception;
+		private String log = "";
+
+		private UnitResult(File file) {
+			this.file = file;
+		}
+
+		private long time(int stage, long start) {
+			long now = System.nanoTime();
+			stageTimes[stage] = now - start;
+			return now;
+		}
+
+		/**
+		 * @return true if there are errors
+		 */
+		private boolean addReports(List<Report> reports) {
+			for (Report report : reports) {
+				if (!this.reports.contains(report)) this.reports.add(report);
+			}
+			return reports.stream().anyMatch(report -> report.getType() == ReportType.ERROR);
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return the name of the compiled class, or null if the compilation failed
+		 */
+		public String getClassName() {
+			return className;
+		}
+
+		public List<Report> getReports() {
+			return reports;
+		}
+
+		public Exception getException() {
+			return exception;
+		}
+
+		/**
+		 * @return the progress printed by the stages
+		 */
+		public String getLog() {
+			return log;
+		}
+
+		/**
+		 * @return the time of each stage in nanoseconds: parse, analysis, ollir, jasmin and assemble
+		 */
+		public long[] getStageTimes() {
+			return stageTimes;
+		}
+
+		public boolean isSuccess() {
+			return className != null && exception == null;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder line = new StringBuilder(isSuccess() ? "OK   " : "FAIL ").append(file.getPath());
+
+			for (int i = 0; i < STAGES.length; i++) {
+				line.append(String.format(" | %s %d ms", STAGES[i], stageTimes[i] / 1_000_000));
+			}
+
+			if (exception != null) {
+				line.append("\n     ").append(exception);
+			}
+			for (Report report : reports) {
+				if (report.getType() == ReportType.ERROR) line.append("\n     ").append(report);
+			}
+
+			return line.toString();
+		}
+	}
+}
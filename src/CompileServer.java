@@ -0,0 +1,236 @@
+import pt.up.fe.comp.jmm.JmmParserResult;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the compiler running and compiles the code it receives, so that the parser, the stages and the JIT compiled
+ * code are reused between compilations instead of paying the start of a new JVM each time.
+ * <p>
+ * Requests are read from stdin or, if a port is given, from connections to that port on the local machine, one
+ * connection at a time. Each request is a line followed by its data:
+ * <pre>
+ * COMPILE &lt;number of bytes&gt;\n&lt;Java-- code in UTF-8&gt;
+ * QUIT\n
+ * </pre>
+ * The answer to COMPILE is "OK &lt;class name&gt;\n" or "ERROR\n", followed by the sections REPORTS, OLLIR, JASMIN and
+ * CLASS, each as "&lt;name&gt; &lt;number of bytes&gt;\n&lt;bytes&gt;\n", and a final "END\n". Sections of the stages that
+ * did not run are empty. QUIT closes the connection, or stops the server when reading from stdin.
+ */
+public class CompileServer {
+	private static final PrintStream NO_LOG = new PrintStream(OutputStream.nullOutputStream());
+
+	private final Main parser = new Main();
+	private final AnalysisStage analysis = new AnalysisStage(NO_LOG);
+	private final OptimizationStage optimization = new OptimizationStage(NO_LOG);
+	private final BackendStage backend = new BackendStage(false);
+
+	/**
+	 * Usage: -server (reads from stdin) or -server=port
+	 */
+	public static void main(String[] args) throws IOException {
+		CompileServer server = new CompileServer();
+
+		if (!args[0].startsWith("-server=")) {
+			// The answers own stdout, anything else printed while compiling goes to stderr
+			PrintStream answers = System.out;
+			System.setOut(System.err);
+			server.serve(System.in, answers);
+			return;
+		}
+
+		int port = Integer.parseInt(args[0].substring("-server=".length()));
+		try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			System.err.println("Compile server listening on port " + serverSocket.getLocalPort());
+			while (true) {
+				try (Socket socket = serverSocket.accept()) {
+					server.serve(socket.getInputStream(), socket.getOutputStream());
+				} catch (IOException e) {
+					System.err.println("Connection closed: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Answers the requests read from the input until QUIT or the end of the input
+	 */
+	public void serve(InputStream input, OutputStream output) throws IOException {
+		InputStream in = new BufferedInputStream(input);
+		OutputStream out = new BufferedOutputStream(output);
+
+		String request;
+		while ((request = readLine(in)) != null) {
+			if (request.equals("QUIT")) break;
+
+			if (!request.startsWith("COMPILE ")) {
+				writeError(out, "Unknown request: " + request);
+				continue;
+			}
+
+			int length;
+			try {
+				length = Integer.parseInt(request.substring("COMPILE ".length()).trim());
+			} catch (NumberFormatException e) {
+				length = -1;
+			}
+			if (length < 0) {
+				writeError(out, "Invalid number of bytes: " + request);
+				continue;
+			}
+
+			byte[] code = in.readNBytes(length);
+			if (code.length < length) {
+				writeError(out, "Request ended after " + code.length + " of " + length + " bytes");
+				break;
+			}
+
+			compile(new String(code, StandardCharsets.UTF_8)).write(out);
+			out.flush();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Compiles the given code with the instances kept by the server
+	 */
+	public Result compile(String code) {
+		Result result = new Result();
+
+		try {
+			JmmParserResult parserResult = parser.parse(code);
+			if (result.addReports(parserResult.getReports())) return result;
+
+			JmmSemanticsResult semanticsResult = analysis.semanticAnalysis(parserResult);
+			if (result.addReports(semanticsResult.getReports())) return result;
+
+			OllirResult ollirResult = optimization.toOllirClass(semanticsResult);
+			result.ollirCode = ollirResult.getOllirCode();
+
+			JasminResult jasminResult = backend.toJasmin(ollirResult);
+			if (result.addReports(jasminResult.getReports())) return result;
+			result.jasminCode = jasminResult.getJasminCode();
+
+			result.classBytes = jasminResult.compileToBytes();
+			result.className = jasminResult.getClassName();
+		} catch (RuntimeException | StackOverflowError e) {
+			// A bug or code nested too deeply fails this request only
+			result.exception = e;
+		}
+
+		return result;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int c;
+		while ((c = in.read()) != '\n') {
+			if (c == -1) {
+				if (line.size() == 0) return null;
+				throw new EOFException("Request ended in the middle of a line");
+			}
+			if (c != '\r') line.write(c);
+		}
+		return line.toString(StandardCharsets.UTF_8);
+	}
+
+	private static void writeLine(OutputStream out, String line) throws IOException {
+		out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void writeError(OutputStream out, String message) throws IOException {
+		writeLine(out, "ERROR");
+		writeSection(out, "REPORTS", (message + "\n").getBytes(StandardCharsets.UTF_8));
+		writeLine(out, "END");
+		out.flush();
+	}
+
+	private static void writeSection(OutputStream out, String name, byte[] data) throws IOException {
+		writeLine(out, name + " " + data.length);
+		out.write(data);
+		out.write('\n');
+	}
+
+	/**
+	 * The outcome of one compilation
+	 */
+	public static class Result {
+		private final List<Report> reports = new ArrayList<>();
+		private String className;
+		private String ollirCode = "";
+		private String jasminCode = "";
+		private byte[] classBytes = new byte[0];
+		private Throwable exception;
+
+		/**
+		 * @return true if there are errors
+		 */
+		private boolean addReports(List<Report> reports) {
+			for (Report report : reports) {
+				if (!this.reports.contains(report)) this.reports.add(report);
+			}
+			return reports.stream().anyMatch(report -> report.getType() == ReportType.ERROR);
+		}
+
+		public boolean isSuccess() {
+			return className != null;
+		}
+
+		/**
+		 * @return the name of the compiled class, or null if the compilation failed
+		 */
+		public String getClassName() {
+			return className;
+		}
+
+		public List<Report> getReports() {
+			return reports;
+		}
+
+		public String getOllirCode() {
+			return ollirCode;
+		}
+
+		public String getJasminCode() {
+			return jasminCode;
+		}
+
+		public byte[] getClassBytes() {
+			return classBytes;
+		}
+
+		private void write(OutputStream out) throws IOException {
+			StringBuilder reportsText = new StringBuilder();
+			for (Report report : reports) {
+				reportsText.append(report).append("\n");
+			}
+			if (exception != null) {
+				reportsText.append(exception).append("\n");
+			}
+
+			writeLine(out, isSuccess() ? "OK " + className : "ERROR");
+			writeSection(out, "REPORTS", reportsText.toString().getBytes(StandardCharsets.UTF_8));
+			writeSection(out, "OLLIR", ollirCode.getBytes(StandardCharsets.UTF_8));
+			writeSection(out, "JASMIN", jasminCode.getBytes(StandardCharsets.UTF_8));
+			writeSection(out, "CLASS", classBytes);
+			writeLine(out, "END");
+		}
+	}
+}
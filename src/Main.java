@@ -5,7 +5,9 @@ import pt.up.fe.comp.jmm.JmmParser;
 import pt.up.fe.comp.jmm.JmmParserResult;
 import pt.up.fe.comp.jmm.analysis.JmmAnalysis;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNodeArena;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.jasmin.JasminUtils;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.specs.util.SpecsIo;
 
@@ -18,79 +20,97 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class Main implements JmmParser {
+	/** Kept between parses so that a long-running compiler reuses it */
+	private JAVAMINUSMINUSPARSER parser;
 
 	public static void main(String[] args) throws IOException {
+		// Compile requests are read from stdin or from a local port, so nothing else is printed
+		if (args.length > 0 && args[0].startsWith("-server")) {
+			CompileServer.main(args);
+			return;
+		}
+
 		System.out.println("Executing with args: " + Arrays.toString(args));
 
-		File jmmFile = new File(args[0]);
+		// Options start with "-", e.g. -o to optimize or -r=<n> to allocate registers and fail if a method uses more
+		// than n, the other arguments are files or folders
+		boolean optimize = false;
+		int registers = BackendStage.NO_ALLOCATION;
+		List<String> sources = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.equals("-o")) {
+				optimize = true;
+			} else if (arg.startsWith("-r=")) {
+				registers = Integer.parseInt(arg.substring(3));
+			} else if (!arg.startsWith("-")) {
+				sources.add(arg);
+			}
+		}
+
+		// Several files or a folder are compiled in parallel
+		if (sources.size() > 1 || new File(sources.get(0)).isDirectory()) {
+			BatchCompiler.main(args);
+			return;
+		}
+
+		File jmmFile = new File(sources.get(0));
 		String jmm = Files.readString(jmmFile.toPath());
 
 		JmmParserResult parserResult = new Main().parse(jmm);
 		JmmSemanticsResult jmmAnalysis = new AnalysisStage().semanticAnalysis(parserResult);
-		OllirResult ollirResult = new OptimizationStage().toOllir(jmmAnalysis);
-		JasminResult jasminResult = new BackendStage().toJasmin(ollirResult);
-
-		Path path = Paths.get(ollirResult.getSymbolTable().getClassName() + "/");
-		if (!Files.exists(path)) {
-			Files.createDirectory(path);
+		OptimizationStage optimization = new OptimizationStage();
+		if (optimize) {
+			jmmAnalysis = optimization.optimize(jmmAnalysis);
 		}
-		/* AST */
-		String defaultName = path + "/" + ollirResult.getSymbolTable().getClassName();
-
-		try {
-			FileWriter myWriter = new FileWriter(defaultName + ".json");
-			myWriter.write(parserResult.toJson());
-			myWriter.close();
-		} catch (IOException e) {
-			System.out.println("An error occurred.");
-			e.printStackTrace();
+		OllirResult ollirResult = optimization.toOllirClass(jmmAnalysis);
+		JasminResult jasminResult = new BackendStage(true, registers).toJasmin(ollirResult);
+		if (!jasminResult.getReports().isEmpty()) {
+			jasminResult.getReports().forEach(System.out::println);
+			return;
 		}
 
-		/* VARTABLE PROVIDED */
-		try {
-			FileWriter myWriter = new FileWriter(defaultName + ".symbols.txt");
-			myWriter.write(ollirResult.getSymbolTable().print());
-			myWriter.close();
-		} catch (IOException e) {
-			System.out.println("An error occurred.");
-			e.printStackTrace();
-		}
+		/* JAVA compiled class, assembled once */
+		byte[] classBytes = jasminResult.compileToBytes();
 
 		try {
-			FileWriter myWriter = new FileWriter(defaultName + ".enhanced_symbols.txt");
-			myWriter.write(ollirResult.getSymbolTable().toString());
-			myWriter.close();
+			writeOutputs(parserResult, ollirResult, jasminResult, classBytes, Paths.get(""));
 		} catch (IOException e) {
 			System.out.println("An error occurred.");
 			e.printStackTrace();
 		}
 
-		/* OLLIR CODE */
-		try {
-			FileWriter myWriter = new FileWriter(defaultName + ".ollir");
-			myWriter.write(ollirResult.getOllirCode());
-			myWriter.close();
-		} catch (IOException e) {
-			System.out.println("An error occurred.");
-			e.printStackTrace();
-		}
+		/* Put .class on compiled libs directory (for convenience) */
+		JasminUtils.writeClass(jasminResult.getClassName(), classBytes, Path.of("test/fixtures/libs/compiled").toFile());
+	}
 
-		/* Jasmin Code */
-		try {
-			FileWriter myWriter = new FileWriter(defaultName + ".j");
-			myWriter.write(jasminResult.getJasminCode());
-			myWriter.close();
-		} catch (IOException e) {
-			System.out.println("An error occurred.");
-			e.printStackTrace();
-		}
+	/**
+	 * Writes the results of each stage to a folder named after the class: the AST, the symbol table, the OLLIR code,
+	 * the Jasmin code and the class file
+	 * @param outputDir 	folder where the folder of the class is created
+	 * @return 				the folder of the class
+	 */
+	public static Path writeOutputs(JmmParserResult parserResult, OllirResult ollirResult, JasminResult jasminResult,
+									byte[] classBytes, Path outputDir) throws IOException {
+		String className = ollirResult.getSymbolTable().getClassName();
+		Path path = outputDir.resolve(className);
+		Files.createDirectories(path);
 
+		/* AST */
+		Files.writeString(path.resolve(className + ".json"), parserResult.toJson());
+		/* Symbol table */
+		Files.writeString(path.resolve(className + ".symbols.txt"), ollirResult.getSymbolTable().print());
+		Files.writeString(path.resolve(className + ".enhanced_symbols.txt"), ollirResult.getSymbolTable().toString());
+		/* OLLIR */
+		Files.writeString(path.resolve(className + ".ollir"), ollirResult.getOllirCode());
+		/* Jasmin */
+		Files.writeString(path.resolve(className + ".j"), jasminResult.getJasminCode());
 		/* JAVA compiled class */
-		jasminResult.compile(path.toFile());
-		/* Put .class on compiled libs directory (for convenience) */
-		jasminResult.compile(Path.of("test/fixtures/libs/compiled").toFile());
+		JasminUtils.writeClass(jasminResult.getClassName(), classBytes, path.toFile());
+
+		return path;
 	}
 
 	/**
@@ -99,12 +119,32 @@ public class Main implements JmmParser {
 	 * @return 			JmmParserResult
 	 */
 	public JmmParserResult parse(String jmmCode) {
+		return parse(jmmCode, false);
+	}
+
+	/**
+	 * Given a String representing Jmm Code, returns the Result of that parsing
+	 * @param jmmCode 		String representing Java minus minus code
+	 * @param compactAst 	if true, the AST is stored in a {@link JmmNodeArena} instead of one object per node
+	 * @return 				JmmParserResult
+	 */
+	public JmmParserResult parse(String jmmCode, boolean compactAst) {
 		try {
-			JAVAMINUSMINUSPARSER parser = new JAVAMINUSMINUSPARSER(new StringReader(jmmCode));
+			if (parser == null) {
+				parser = new JAVAMINUSMINUSPARSER(new StringReader(jmmCode));
+			} else {
+				parser.ReInit(new StringReader(jmmCode));
+				parser.reports = new ArrayList<>();
+				parser.par_count = 0;
+			}
 			SimpleNode root = parser.Program(); // returns reference to root node
 
     		// root.dump(""); // prints the tree on the screen
 
+			if (compactAst) {
+				return new JmmParserResult(JmmNodeArena.compact(root, JAVAMINUSMINUSPARSERTreeConstants.jjtNodeName), parser.reports);
+			}
+
     		return new JmmParserResult(root, parser.reports);
 		} catch(ParseException e) {
 			throw new RuntimeException("Error while parsing", e);
@@ -1,13 +1,17 @@
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import ast.ConstantPropagation;
 import ast.JmmSymbolTable;
 import ast.OllirVisitor;
 import ast.SymbolTableVisitor;
+import ast.ollir.ClassUnitBuilder;
+import ast.ollir.OllirClass;
 import pt.up.fe.comp.jmm.JmmNode;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
@@ -29,25 +33,58 @@ import pt.up.fe.specs.util.SpecsIo;
  */
 
 public class OptimizationStage implements JmmOptimization {
+    private final PrintStream log;
+
+    public OptimizationStage() {
+        this(System.out);
+    }
+
+    /**
+     * @param log where the progress of the stage is printed
+     */
+    public OptimizationStage(PrintStream log) {
+        this.log = log;
+    }
 
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
+        OllirClass ollirClass = generateOllir(semanticsResult);
+        String ollirCode = ollirClass.toOllir();
 
+        return new OllirResult(semanticsResult, ollirCode, semanticsResult.getReports());
+    }
+
+    @Override
+    public OllirResult toOllirClass(JmmSemanticsResult semanticsResult) {
+        OllirClass ollirClass = generateOllir(semanticsResult);
+
+        return new OllirResult(semanticsResult, ClassUnitBuilder.build(ollirClass), ollirClass::toOllir, semanticsResult.getReports());
+    }
+
+    private OllirClass generateOllir(JmmSemanticsResult semanticsResult) {
         JmmNode node = semanticsResult.getRootNode();
 
         // More reports from this stage
         OllirVisitor visitor = new OllirVisitor((JmmSymbolTable) semanticsResult.getSymbolTable(), semanticsResult.getReports());
-        // Convert the AST to a String containing the equivalent OLLIR code
-        System.out.println("Preorder Visitor - Generating OLLIR...");
-        String ollirCode = (String) visitor.visit(node, Arrays.asList("DEFAULT_VISIT")).get(0);
-        System.out.println("OLLIR Generation Successful!");
+        // Convert the AST to the equivalent OLLIR code
+        log.println("Preorder Visitor - Generating OLLIR...");
+        OllirClass ollirClass = (OllirClass) visitor.visit(node, Collections.singletonList("DEFAULT_VISIT"));
+        log.println("OLLIR Generation Successful!");
 
-        return new OllirResult(semanticsResult, ollirCode, semanticsResult.getReports());
+        return ollirClass;
     }
 
+    /**
+     * Folds the expressions known at compile time and propagates the constants assigned to local variables, so that
+     * the OLLIR generation emits literals for them
+     */
     @Override
     public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
-        // THIS IS JUST FOR CHECKPOINT 3
+        JmmSymbolTable table = (JmmSymbolTable) semanticsResult.getSymbolTable();
+
+        log.println("Propagating constants...");
+        new ConstantPropagation(table.getAnnotations()).propagate(semanticsResult.getRootNode());
+
         return semanticsResult;
     }
 
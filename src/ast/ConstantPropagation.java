@@ -0,0 +1,271 @@
+package ast;
+
+import pt.up.fe.comp.jmm.JmmNode;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the expressions whose value is known at compile time: operations on literals (e.g. 2 * 3 < 7) and the local
+ * variables holding a constant where they are used. The values are kept in the {@link NodeAnnotations} of the
+ * analysis, so that the OLLIR generation emits a literal instead of the expression, and only the branch that is taken
+ * for a constant condition.
+ * <p>
+ * A constant assigned to a local variable reaches the statements after it, the branches of an if and the body of a
+ * while that does not assign the variable. After an if, the variable keeps its value only if both branches leave it
+ * with the same one.
+ */
+public class ConstantPropagation {
+    private final NodeAnnotations annotations;
+
+    public ConstantPropagation(NodeAnnotations annotations) {
+        this.annotations = annotations;
+    }
+
+    /**
+     * Annotates the constant expressions of each method of the tree
+     */
+    public void propagate(JmmNode root) {
+        Deque<JmmNode> nodes = new ArrayDeque<>();
+        nodes.push(root);
+        while (!nodes.isEmpty()) {
+            JmmNode node = nodes.pop();
+            if (node.getKind().equals("ClassMethod") || node.getKind().equals("MainMethod")) {
+                statements(node, 0, new IdentityHashMap<>());
+                continue;
+            }
+
+            node.forEachChild(nodes::push);
+        }
+    }
+
+    /**
+     * Visits the statements of the node from the given child, in order
+     * @param constants     value of each local variable holding a constant before the statements, updated to after them
+     */
+    private void statements(JmmNode node, int from, Map<Symbol, String> constants) {
+        for (int i = from; i < node.getNumChildren(); i++) {
+            statement(node.getChild(i), constants);
+        }
+    }
+
+    private void statement(JmmNode node, Map<Symbol, String> constants) {
+        switch (node.getKind()) {
+            case "Param":
+            case "VarDeclaration":
+                break;
+            case "Assignment":
+                assignment(node, constants);
+                break;
+            case "IfElse":
+                ifElse(node, constants);
+                break;
+            case "While":
+                loop(node, constants);
+                break;
+            default:
+                // Return, IfCondition, WhileCondition and expressions used as statements
+                evaluate(node, constants);
+        }
+    }
+
+    private void assignment(JmmNode node, Map<Symbol, String> constants) {
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            evaluate(node.getChild(i), constants);
+        }
+
+        Symbol variable = getLocalVariable(node);
+        // An element of an array does not change the array
+        if (variable == null || node.getNumChildren() > 1) {
+            return;
+        }
+
+        String value = getValue(node.getChild(0));
+        if (value != null) {
+            constants.put(variable, value);
+        } else {
+            constants.remove(variable);
+        }
+    }
+
+    private void ifElse(JmmNode node, Map<Symbol, String> constants) {
+        JmmNode ifStatement = node.getChild(0);
+        JmmNode elseStatement = node.getChild(1);
+
+        statement(ifStatement.getChild(0), constants);
+        String condition = annotations.getConstant(ifStatement.getChild(0));
+
+        Map<Symbol, String> ifConstants = new IdentityHashMap<>(constants);
+        statements(ifStatement, 1, ifConstants);
+        Map<Symbol, String> elseConstants = new IdentityHashMap<>(constants);
+        statements(elseStatement, 0, elseConstants);
+
+        // Only the branch that is taken reaches the statements after the if
+        constants.clear();
+        if ("true".equals(condition)) {
+            constants.putAll(ifConstants);
+        } else if ("false".equals(condition)) {
+            constants.putAll(elseConstants);
+        } else {
+            ifConstants.forEach((variable, value) -> {
+                if (value.equals(elseConstants.get(variable))) {
+                    constants.put(variable, value);
+                }
+            });
+        }
+    }
+
+    private void loop(JmmNode node, Map<Symbol, String> constants) {
+        // Variables assigned in the body are not constant in the condition and the body, as they may hold the value
+        // of the previous iteration, nor after the loop, as the body may run any number of times
+        constants.keySet().removeAll(getAssignedVariables(node));
+
+        statement(node.getChild(0), constants);
+        statements(node, 1, new IdentityHashMap<>(constants));
+    }
+
+    /**
+     * @return the local variables assigned in the statements of the node, including nested ones
+     */
+    private Set<Symbol> getAssignedVariables(JmmNode node) {
+        Set<Symbol> variables = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Deque<JmmNode> nodes = new ArrayDeque<>();
+        nodes.push(node);
+        while (!nodes.isEmpty()) {
+            JmmNode current = nodes.pop();
+            current.forEachChild(nodes::push);
+
+            if (current.getKind().equals("Assignment") && current.getNumChildren() == 1) {
+                Symbol variable = getLocalVariable(current);
+                if (variable != null) {
+                    variables.add(variable);
+                }
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Annotates the constant sub-expressions of the expression, operands first. Walks the expression with an explicit
+     * stack, as expressions can be deeper than the Java stack allows with one call per level.
+     */
+    private void evaluate(JmmNode expression, Map<Symbol, String> constants) {
+        Deque<JmmNode> nodes = new ArrayDeque<>();
+        Deque<JmmNode> postorder = new ArrayDeque<>();
+        nodes.push(expression);
+        while (!nodes.isEmpty()) {
+            JmmNode node = nodes.pop();
+            postorder.push(node);
+            node.forEachChild(nodes::push);
+        }
+
+        while (!postorder.isEmpty()) {
+            JmmNode node = postorder.pop();
+            String value = fold(node, constants);
+            if (value != null) {
+                annotations.putConstant(node, value);
+            }
+        }
+    }
+
+    /**
+     * @return the value of the node, from the values of its operands, or null if it is not constant
+     */
+    private String fold(JmmNode node, Map<Symbol, String> constants) {
+        switch (node.getKind()) {
+            case "Variable": {
+                Symbol variable = getLocalVariable(node);
+                return variable != null ? constants.get(variable) : null;
+            }
+            case "BinaryOperation": {
+                String left = getValue(node.getChild(0));
+                String right = getValue(node.getChild(1));
+                if (left == null || right == null) return null;
+
+                return arithmetic(node.get("operation"), left, right);
+            }
+            case "RelationalExpression": {
+                String left = getValue(node.getChild(0));
+                String right = getValue(node.getChild(1));
+                if (left == null || right == null || !node.get("operation").equals("<")) return null;
+
+                return String.valueOf(Integer.parseInt(left) < Integer.parseInt(right));
+            }
+            case "AndExpression": {
+                // false && b is false whatever b is, as b is not evaluated
+                String left = getValue(node.getChild(0));
+                if ("false".equals(left)) return left;
+
+                String right = getValue(node.getChild(1));
+                if (left == null || right == null) return null;
+
+                return String.valueOf(right.equals("true"));
+            }
+            case "IfCondition":
+            case "WhileCondition":
+                return getValue(node.getChild(0));
+            case "NotExpression": {
+                String operand = getValue(node.getChild(0));
+                if (operand == null) return null;
+
+                return String.valueOf(!operand.equals("true"));
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the result of the operation, or null if it cannot be computed at compile time (a division by zero)
+     */
+    private static String arithmetic(String operation, String left, String right) {
+        int a = Integer.parseInt(left);
+        int b = Integer.parseInt(right);
+
+        switch (operation) {
+            case "+":
+                return String.valueOf(a + b);
+            case "-":
+                return String.valueOf(a - b);
+            case "*":
+                return String.valueOf(a * b);
+            case "/":
+                return b != 0 ? String.valueOf(a / b) : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the value of a literal or of an expression already folded, or null if it is not constant
+     */
+    private String getValue(JmmNode node) {
+        switch (node.getKind()) {
+            case "IntegerLiteral":
+                // Literals too large for an int are left to the later stages
+                try {
+                    return String.valueOf(Integer.parseInt(node.get("value")));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            case "BooleanLiteral":
+                return node.get("value");
+            default:
+                return annotations.getConstant(node);
+        }
+    }
+
+    /**
+     * @return the local variable or parameter named by a variable or an assignment, or null if it names something
+     * else (e.g. a field of the class)
+     */
+    private Symbol getLocalVariable(JmmNode node) {
+        return annotations.isClassField(node) ? null : annotations.getVariable(node);
+    }
+}
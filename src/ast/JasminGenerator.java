@@ -1,52 +1,79 @@
 package ast;
 
+import ast.exceptions.StackHeightMismatch;
 import org.specs.comp.ollir.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 public class JasminGenerator {
     private ClassUnit classUnit;
-    private String jasminCode;
+    private Map<Method, Integer> registers;
     private int conditional;
-    private int stack_counter;
-    private int max_counter;
 
     public JasminGenerator(ClassUnit classUnit) {
+        this(classUnit, Collections.emptyMap());
+    }
+
+    /**
+     * @param registers number of registers of each method whose variables were given registers by the
+     *                  {@link RegisterAllocator}, the other methods have one per variable
+     */
+    public JasminGenerator(ClassUnit classUnit, Map<Method, Integer> registers) {
         this.classUnit = classUnit;
+        this.registers = registers;
     }
 
-    public String dealWithClass() {
-        StringBuilder stringBuilder = new StringBuilder("");
+    public String dealWithClass() throws StackHeightMismatch {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            this.dealWithClass(stringBuilder);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder.toString();
+    }
 
+    /**
+     * Writes the Jasmin code of the class to the given output, one method at a time.
+     * <p>
+     * Only the code of the current method is kept in memory, because its limits are known after its instructions. A
+     * method is written only once its code was checked, so the output always ends after a whole method, but if an
+     * exception is thrown the methods before it were already written and the class is incomplete.
+     *
+     * @throws StackHeightMismatch if the code of a method does not keep the stack consistent
+     */
+    public void dealWithClass(Appendable out) throws IOException, StackHeightMismatch {
         // class declaration
-        stringBuilder.append(".class ").append(classUnit.getClassName()).append("\n");
+        out.append(".class ").append(classUnit.getClassName()).append("\n");
 
         // extends declaration
         if (classUnit.getSuperClass() != null) {
-            stringBuilder.append(".super ").append(classUnit.getSuperClass()).append("\n");
+            out.append(".super ").append(classUnit.getSuperClass()).append("\n");
         }
         else {
-            stringBuilder.append(".super java/lang/Object\n");
+            out.append(".super java/lang/Object\n");
         }
 
         // fields declaration
         for (Field f : classUnit.getFields()) {
-            stringBuilder.append(".field '").append(f.getFieldName()).append("' ").append(this.convertType(f.getFieldType())).append("\n");
+            out.append(".field '").append(f.getFieldName()).append("' ").append(this.convertType(f.getFieldType())).append("\n");
         }
 
         for (Method method : classUnit.getMethods()) {
-            this.stack_counter = 0;
-            this.max_counter = 0;
-
-            stringBuilder.append(this.dealWithMethodHeader(method));
-            String instructions = this.dealtWithMethodIntructions(method);
-            if (!method.isConstructMethod()) {
-                stringBuilder.append(this.dealWithMethodLimits(method));
-                stringBuilder.append(instructions);
+            String header = this.dealWithMethodHeader(method);
+            if (method.isConstructMethod()) {
+                out.append(header);
+                continue;
             }
-        }
 
-        return stringBuilder.toString();
+            StringBuilder instructions = new StringBuilder();
+            this.dealtWithMethodIntructions(method, instructions);
+            String limits = this.dealWithMethodLimits(method, instructions);
+            out.append(header).append(limits).append(instructions);
+        }
     }
 
     private String dealWithMethodHeader(Method method) {
@@ -79,140 +106,160 @@ public class JasminGenerator {
         return stringBuilder.toString();
     }
 
-    private String dealWithMethodLimits(Method method) {
+    private String dealWithMethodLimits(Method method, CharSequence instructions) throws StackHeightMismatch {
         StringBuilder stringBuilder = new StringBuilder();
 
-        int localCount = method.getVarTable().size();
-        if (!method.isStaticMethod()) localCount++;
+        int localCount;
+        if (registers.containsKey(method)) {
+            localCount = registers.get(method);
+        } else {
+            localCount = method.getVarTable().size();
+            if (!method.isStaticMethod()) localCount++;
+        }
         stringBuilder.append(".limit locals ").append(localCount).append("\n");
-        stringBuilder.append(".limit stack ").append(max_counter).append("\n");
+        int maxStack;
+        try {
+            maxStack = new JasminStackAnalysis(instructions).getMaxStack();
+        } catch (StackHeightMismatch e) {
+            throw new StackHeightMismatch("In method " + method.getMethodName() + ": " + e.getMessage());
+        }
+        stringBuilder.append(".limit stack ").append(maxStack).append("\n");
 
         return stringBuilder.toString();
     }
 
-    private String dealtWithMethodIntructions(Method method) {
-        StringBuilder stringBuilder = new StringBuilder();
-        method.getVarTable();
+    private void dealtWithMethodIntructions(Method method, StringBuilder code) {
+        Map<Instruction, List<String>> instructionLabels = this.getInstructionLabels(method.getLabels());
         for (Instruction instruction : method.getInstructions()) {
-            stringBuilder.append(dealWithInstruction(instruction, method.getVarTable(), method.getLabels()));
+            dealWithInstruction(instruction, method.getVarTable(), instructionLabels, code);
             if (instruction instanceof CallInstruction && ((CallInstruction) instruction).getReturnType().getTypeOfElement() != ElementType.VOID) {
-                stringBuilder.append("pop\n");
-                this.decrementStackCounter(1);
+                code.append("pop\n");
             }
         }
 
-        stringBuilder.append("\n.end method\n");
-        return stringBuilder.toString();
+        code.append("\n.end method\n");
     }
 
-    private String dealWithInstruction(Instruction instruction, HashMap<String, Descriptor> varTable, HashMap<String, Instruction> methodLabels) {
-        StringBuilder stringBuilder = new StringBuilder();
+    /**
+     * Inverts the labels of a method, so that the labels of each instruction are found without going through all of them
+     */
+    private Map<Instruction, List<String>> getInstructionLabels(HashMap<String, Instruction> methodLabels) {
+        Map<Instruction, List<String>> instructionLabels = new IdentityHashMap<>();
         for (Map.Entry<String, Instruction> entry : methodLabels.entrySet()) {
-            if (entry.getValue().equals(instruction)){
-                stringBuilder.append(entry.getKey()).append(":\n");
-            }
+            instructionLabels.computeIfAbsent(entry.getValue(), instruction -> new ArrayList<>()).add(entry.getKey());
+        }
+        return instructionLabels;
+    }
+
+    private void dealWithInstruction(Instruction instruction, HashMap<String, Descriptor> varTable, Map<Instruction, List<String>> instructionLabels, StringBuilder code) {
+        for (String label : instructionLabels.getOrDefault(instruction, Collections.emptyList())) {
+            code.append(label).append(":\n");
         }
 
         switch (instruction.getInstType()) {
             case ASSIGN:
-                return stringBuilder.append(dealWithAssignment((AssignInstruction) instruction, varTable)).toString();
+                dealWithAssignment((AssignInstruction) instruction, varTable, code);
+                break;
             case NOPER:
-                return stringBuilder.append(dealWithSingleOpInstruction((SingleOpInstruction) instruction, varTable)).toString();
+                dealWithSingleOpInstruction((SingleOpInstruction) instruction, varTable, code);
+                break;
             case BINARYOPER:
-                return stringBuilder.append(dealWithBinaryOpInstruction((BinaryOpInstruction) instruction, varTable)).toString();
+                dealWithBinaryOpInstruction((BinaryOpInstruction) instruction, varTable, code);
+                break;
             case UNARYOPER:
-                return "Deal with '!' in correct form";
+                code.append("Deal with '!' in correct form");
+                break;
             case CALL:
-                return stringBuilder.append(dealWithCallInstruction((CallInstruction) instruction, varTable)).toString();
+                dealWithCallInstruction((CallInstruction) instruction, varTable, code);
+                break;
             case BRANCH:
-                return stringBuilder.append(dealWithCondBranchInstruction((CondBranchInstruction) instruction, varTable)).toString();
+                dealWithCondBranchInstruction((CondBranchInstruction) instruction, varTable, code);
+                break;
             case GOTO:
-                return stringBuilder.append(dealWithGotoInstrutcion((GotoInstruction) instruction, varTable)).toString();
+                dealWithGotoInstrutcion((GotoInstruction) instruction, varTable, code);
+                break;
             case PUTFIELD:
-                return stringBuilder.append(dealWithPutFieldInstruction((PutFieldInstruction) instruction, varTable)).toString();
+                dealWithPutFieldInstruction((PutFieldInstruction) instruction, varTable, code);
+                break;
             case GETFIELD:
-                return stringBuilder.append(dealWithGetFieldInstruction((GetFieldInstruction) instruction, varTable)).toString();
+                dealWithGetFieldInstruction((GetFieldInstruction) instruction, varTable, code);
+                break;
             case RETURN:
-                return stringBuilder.append(dealWithReturnInstruction((ReturnInstruction) instruction, varTable)).toString();
+                dealWithReturnInstruction((ReturnInstruction) instruction, varTable, code);
+                break;
             default:
-                return "Error in Instructions";
+                code.append("Error in Instructions");
         }
     }
 
-    private String dealWithAssignment(AssignInstruction inst, HashMap<String, Descriptor> varTable) {
-        String stringBuilder = "";
+    private void dealWithAssignment(AssignInstruction inst, HashMap<String, Descriptor> varTable, StringBuilder code) {
         Operand operand = (Operand) inst.getDest();
         if (operand instanceof ArrayOperand) {
             ArrayOperand aoperand = (ArrayOperand) operand;
 
             // Load array
-            stringBuilder += String.format("aload%s\n", this.getVirtualReg(aoperand.getName(), varTable));
-            this.incrementStackCounter(1);
+            code.append("aload").append(this.getVirtualReg(aoperand.getName(), varTable)).append("\n");
 
             // Load index
-            stringBuilder += loadElement(aoperand.getIndexOperands().get(0), varTable);
+            loadElement(aoperand.getIndexOperands().get(0), varTable, code);
         }
 
-        stringBuilder += dealWithInstruction(inst.getRhs(), varTable, new HashMap<String, Instruction>());
+        dealWithInstruction(inst.getRhs(), varTable, Collections.emptyMap(), code);
         if(!(operand.getType().getTypeOfElement().equals(ElementType.OBJECTREF) && inst.getRhs() instanceof CallInstruction)) { //if its a new object call does not store yet
-            stringBuilder += this.storeElement(operand, varTable);
+            this.storeElement(operand, varTable, code);
         }
-
-        return stringBuilder;
     }
 
-    private String dealWithSingleOpInstruction(SingleOpInstruction instruction, HashMap<String, Descriptor> varTable) {
-        return loadElement(instruction.getSingleOperand(), varTable);
+    private void dealWithSingleOpInstruction(SingleOpInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
+        loadElement(instruction.getSingleOperand(), varTable, code);
     }
 
-    private String dealWithBinaryOpInstruction(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable) {
+    private void dealWithBinaryOpInstruction(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
         switch (instruction.getUnaryOperation().getOpType()) {
             case ADD:
             case SUB:
             case MUL:
             case DIV:
-                return this.dealWithIntOperation(instruction, varTable);
+                this.dealWithIntOperation(instruction, varTable, code);
+                break;
             case LTH:
             case GTE:
             case ANDB:
             case NOTB:
-                return this.dealWithBooleanOperation(instruction, varTable);
+                this.dealWithBooleanOperation(instruction, varTable, code);
+                break;
             default:
-                return "Error in BinaryOpInstruction";
+                code.append("Error in BinaryOpInstruction");
         }
     }
 
-    private String dealWithIntOperation(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable) {
-        String leftOperand = loadElement(instruction.getLeftOperand(), varTable);
-        String rightOperand = loadElement(instruction.getRightOperand(), varTable);
-        String operation;
+    private void dealWithIntOperation(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
+        loadElement(instruction.getLeftOperand(), varTable, code);
+        loadElement(instruction.getRightOperand(), varTable, code);
 
         switch (instruction.getUnaryOperation().getOpType()) {
             // ..., value1, value2 →
             // ..., result
             case ADD:
-                operation = "iadd\n";
+                code.append("iadd\n");
                 break;
             case SUB:
-                operation = "isub\n";
+                code.append("isub\n");
                 break;
             case MUL:
-                operation = "imul\n";
+                code.append("imul\n");
                 break;
             case DIV:
-                operation = "idiv\n";
+                code.append("idiv\n");
                 break;
             default:
-                return "Error in IntOperation\n";
+                code.append("Error in IntOperation\n");
+                return;
         }
-
-        this.decrementStackCounter(1);
-        return leftOperand + rightOperand + operation;
     }
 
-    private String dealWithBooleanOperation(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable) {
+    private void dealWithBooleanOperation(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
         OperationType ot = instruction.getUnaryOperation().getOpType();
-        StringBuilder stringBuilder = new StringBuilder();
 
         switch (instruction.getUnaryOperation().getOpType()) {
             case LTH:
@@ -220,65 +267,48 @@ public class JasminGenerator {
                 // ..., value1, value2 →
                 // ...
 
-                String leftOperand = loadElement(instruction.getLeftOperand(), varTable);
-                String rightOperand = loadElement(instruction.getRightOperand(), varTable);
+                loadElement(instruction.getLeftOperand(), varTable, code);
+                loadElement(instruction.getRightOperand(), varTable, code);
 
-                stringBuilder.append(leftOperand)
-                        .append(rightOperand)
-                        .append(this.dealWithRelationalOperation(ot, this.getTrueLabel()))
+                code.append(this.dealWithRelationalOperation(ot, this.getTrueLabel()))
                         .append("iconst_1\n")
                         .append("goto ").append(this.getEndIfLabel()).append("\n")
                         .append(this.getTrueLabel()).append(":\n")
                         .append("iconst_0\n")
                         .append(this.getEndIfLabel()).append(":\n");
-
-                // if_icmp decrements 2, iconst increments 1
-                this.decrementStackCounter(1);
                 break;
             }
             case ANDB: {
-                // ..., value →
-                // ...
-                String ifeq = "ifeq " + this.getTrueLabel() + "\n";
-
-                // Compare left operand
-                stringBuilder.append(loadElement(instruction.getLeftOperand(), varTable)).append(ifeq);
-                this.decrementStackCounter(1);
-
-                // Compare right operand
-                stringBuilder.append(loadElement(instruction.getRightOperand(), varTable)).append(ifeq);
-                this.decrementStackCounter(1);
-
-                stringBuilder.append("iconst_1\n")
-                        .append("goto ").append(this.getEndIfLabel()).append("\n")
+                // ... →
+                // ..., value
+                // The right operand is only loaded if the left one is true, and is then the value
+                loadElement(instruction.getLeftOperand(), varTable, code);
+                code.append("ifeq ").append(this.getTrueLabel()).append("\n");
+
+                loadElement(instruction.getRightOperand(), varTable, code);
+                code.append("goto ").append(this.getEndIfLabel()).append("\n")
                         .append(this.getTrueLabel()).append(":\n")
                         .append("iconst_0\n")
                         .append(this.getEndIfLabel()).append(":\n");
-
-                // iconst
-                this.incrementStackCounter(1);
                 break;
             }
             case NOTB: {
-                String operand = loadElement(instruction.getLeftOperand(), varTable);
+                loadElement(instruction.getLeftOperand(), varTable, code);
 
-                stringBuilder.append(operand)
-                        .append("ifne ").append(this.getTrueLabel()).append("\n")
+                code.append("ifne ").append(this.getTrueLabel()).append("\n")
                         .append("iconst_1\n")
                         .append("goto ").append(this.getEndIfLabel()).append("\n")
                         .append(this.getTrueLabel()).append(":\n")
                         .append("iconst_0\n")
                         .append(this.getEndIfLabel()).append(":\n");
-
-                // No need to change stack, load increments 1, ifne would dec.1 and iconst would inc.1
                 break;
             }
             default:
-                return "Error in BooleansOperations\n";
+                code.append("Error in BooleansOperations\n");
+                return;
         }
 
         this.conditional++;
-        return stringBuilder.toString();
     }
 
     private String dealWithRelationalOperation(OperationType ot, String trueLabel) {
@@ -292,109 +322,109 @@ public class JasminGenerator {
         }
     }
 
-    private String dealWithCondBranchInstruction(CondBranchInstruction instruction, HashMap<String, Descriptor> varTable) {
-        StringBuilder stringBuilder = new StringBuilder();
+    private void dealWithCondBranchInstruction(CondBranchInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
         switch (instruction.getCondOperation().getOpType()) {
+            case LTH:
+            case GTE:
+                // Compares and jumps at once, without the value of the comparison
+                this.loadElement(instruction.getLeftOperand(), varTable, code);
+                this.loadElement(instruction.getRightOperand(), varTable, code);
+                code.append(instruction.getCondOperation().getOpType() == OperationType.LTH ? "if_icmplt " : "if_icmpge ")
+                        .append(instruction.getLabel())
+                        .append("\n");
+
+                // ..., value1, value2 →
+                // ...
+                break;
+            case ANDB:
+                // Jumps only if both are true, without loading the right operand if the left one is false
+                this.loadElement(instruction.getLeftOperand(), varTable, code);
+                code.append("ifeq ").append(this.getEndIfLabel()).append("\n");
+                this.loadElement(instruction.getRightOperand(), varTable, code);
+                code.append("ifne ").append(instruction.getLabel()).append("\n")
+                        .append(this.getEndIfLabel()).append(":\n");
+
+                this.conditional++;
+                break;
             case NOTB:
-                stringBuilder.append(this.loadElement(instruction.getLeftOperand(), varTable))
-                        .append("ifeq ")
+                this.loadElement(instruction.getLeftOperand(), varTable, code);
+                code.append("ifeq ")
                         .append(instruction.getLabel())
                         .append("\n");
 
                 // ..., value →
                 // ...
-                this.decrementStackCounter(1);
                 break;
             default:
-                return "Error in CondBranchInstruction";
+                code.append("Error in CondBranchInstruction");
         }
-
-        return stringBuilder.toString();
     }
 
-    private String dealWithGotoInstrutcion(GotoInstruction instruction, HashMap<String, Descriptor> varTable) {
-        return String.format("goto %s\n", instruction.getLabel());
+    private void dealWithGotoInstrutcion(GotoInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
+        code.append("goto ").append(instruction.getLabel()).append("\n");
     }
 
-    private String dealWithCallInstruction(CallInstruction instruction, HashMap<String, Descriptor> varTable) {
-        String stringBuilder = "";
+    private void dealWithCallInstruction(CallInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
         CallType callType = instruction.getInvocationType();
 
         switch (callType) {
             case invokespecial:
-                stringBuilder += this.dealWithInvoke(instruction, varTable, callType, ((ClassType)instruction.getFirstArg().getType()).getName());
+                this.dealWithInvoke(instruction, varTable, callType, ((ClassType)instruction.getFirstArg().getType()).getName(), code);
                 break;
             case invokestatic:
-                stringBuilder += this.dealWithInvoke(instruction, varTable, callType, ((Operand)instruction.getFirstArg()).getName());
+                this.dealWithInvoke(instruction, varTable, callType, ((Operand)instruction.getFirstArg()).getName(), code);
                 break;
             case invokevirtual:
-                stringBuilder += this.dealWithInvoke(instruction, varTable, callType, ((ClassType)instruction.getFirstArg().getType()).getName());
+                this.dealWithInvoke(instruction, varTable, callType, ((ClassType)instruction.getFirstArg().getType()).getName(), code);
                 break;
             case arraylength:
-                stringBuilder += this.loadElement(instruction.getFirstArg(), varTable);
+                this.loadElement(instruction.getFirstArg(), varTable, code);
 
                 // ..., arrayref →
                 // ..., length
-                // No need to change stack
-                stringBuilder += "arraylength\n";
+                code.append("arraylength\n");
                 break;
             case NEW:
-                stringBuilder += this.dealWithNewObject(instruction, varTable);
+                this.dealWithNewObject(instruction, varTable, code);
                 break;
             default:
-                return "Erro in CallInstruction";
+                code.append("Erro in CallInstruction");
         }
-
-        return stringBuilder;
     }
 
-    private String dealWithInvoke(CallInstruction instruction, HashMap<String, Descriptor> varTable, CallType callType, String className){
-        String stringBuilder = ""; //TODO deal with invokes
-
+    private void dealWithInvoke(CallInstruction instruction, HashMap<String, Descriptor> varTable, CallType callType, String className, StringBuilder code){
         String functionLiteral = ((LiteralElement) instruction.getSecondArg()).getLiteral();
-        String parameters = "";
+        StringBuilder parameters = new StringBuilder();
 
         if (!functionLiteral.equals("\"<init>\"")) {  //does not load element because its a new object, its already done in dealWithNewObject with new and dup
-            stringBuilder += this.loadElement(instruction.getFirstArg(), varTable);
+            this.loadElement(instruction.getFirstArg(), varTable, code);
         }
 
-        int num_params = 0;
         for (Element element : instruction.getListOfOperands()) {
-            stringBuilder += this.loadElement(element, varTable);
-            parameters += this.convertType(element.getType());
-            num_params++;
+            this.loadElement(element, varTable, code);
+            parameters.append(this.convertType(element.getType()));
         }
 
         // ..., objectref (if not static), [arg1, [arg2 ...]] →
         // ..., value (if not void)
-        if (!instruction.getInvocationType().equals(CallType.invokestatic)) {
-            num_params += 1;
-        }
-        this.decrementStackCounter(num_params);
-        if (instruction.getReturnType().getTypeOfElement() != ElementType.VOID) {
-            this.incrementStackCounter(1);
-        }
-
-        stringBuilder += callType.name() + " " + this.getOjectClassName(className) + "." + functionLiteral.replace("\"","") + "(" + parameters + ")" + this.convertType(instruction.getReturnType()) + "\n";
+        code.append(callType.name()).append(" ").append(this.getOjectClassName(className)).append(".")
+                .append(functionLiteral.replace("\"","")).append("(").append(parameters).append(")")
+                .append(this.convertType(instruction.getReturnType())).append("\n");
 
         if (functionLiteral.equals("\"<init>\"") && !className.equals("this")) {
-            stringBuilder += this.storeElement((Operand) instruction.getFirstArg(), varTable);
+            this.storeElement((Operand) instruction.getFirstArg(), varTable, code);
         }
-
-        return stringBuilder;
     }
 
-    private String dealWithNewObject(CallInstruction instruction, HashMap<String, Descriptor> varTable){
+    private void dealWithNewObject(CallInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code){
         Element e = instruction.getFirstArg();
-        String stringBuilder = "";
 
         if (e.getType().getTypeOfElement().equals(ElementType.ARRAYREF)) {
-            stringBuilder += this.loadElement(instruction.getListOfOperands().get(0), varTable);
+            this.loadElement(instruction.getListOfOperands().get(0), varTable, code);
 
             // ..., count →
             // ..., arrayref
-            // No need to change stack
-            stringBuilder += "newarray int\n";
+            code.append("newarray int\n");
         }
         else if (e.getType().getTypeOfElement().equals(ElementType.OBJECTREF)){
             // NEW:
@@ -404,73 +434,63 @@ public class JasminGenerator {
             // DUP:
             // ..., value →
             // ..., value, value
-            this.incrementStackCounter(2);
-
-            stringBuilder += "new " + this.getOjectClassName(((Operand)e).getName()) + "\ndup\n";
+            code.append("new ").append(this.getOjectClassName(((Operand)e).getName())).append("\ndup\n");
         }
-
-        return stringBuilder;
     }
 
-    private String dealWithPutFieldInstruction(PutFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
-        String stringBuilder = "";
+    private void dealWithPutFieldInstruction(PutFieldInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
         Operand obj = (Operand)instruction.getFirstOperand();
         Operand var = (Operand)instruction.getSecondOperand();
         Element value = instruction.getThirdOperand();
 
-        stringBuilder += this.loadElement(obj, varTable); //push object (Class ref) onto the stack
+        this.loadElement(obj, varTable, code); //push object (Class ref) onto the stack
 
-        stringBuilder += this.loadElement(value, varTable); //store const element on stack
+        this.loadElement(value, varTable, code); //store const element on stack
 
         // ..., objectref, value →
-        this.decrementStackCounter(2);
-
-        return stringBuilder + "putfield " + classUnit.getClassName() + "/" + var.getName() + " " + convertType(var.getType()) + "\n";
+        code.append("putfield ").append(classUnit.getClassName()).append("/").append(var.getName()).append(" ")
+                .append(convertType(var.getType())).append("\n");
     }
 
-    private String dealWithGetFieldInstruction(GetFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
-        String jasminCode = "";
+    private void dealWithGetFieldInstruction(GetFieldInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
         Operand obj = (Operand)instruction.getFirstOperand();
         Operand var = (Operand)instruction.getSecondOperand();
 
-        jasminCode += this.loadElement(obj, varTable); //push object (Class ref) onto the stack
+        this.loadElement(obj, varTable, code); //push object (Class ref) onto the stack
 
         // ..., objectref →
         // ..., value
-        // No need to change stack
-
-        return jasminCode + "getfield " + classUnit.getClassName() + "/" + var.getName() + " " + convertType(var.getType()) +  "\n";
+        code.append("getfield ").append(classUnit.getClassName()).append("/").append(var.getName()).append(" ")
+                .append(convertType(var.getType())).append("\n");
     }
 
-    private String dealWithReturnInstruction(ReturnInstruction instruction, HashMap<String, Descriptor> varTable) {
-        if(!instruction.hasReturnValue()) return "return";
-        String returnString = "";
+    private void dealWithReturnInstruction(ReturnInstruction instruction, HashMap<String, Descriptor> varTable, StringBuilder code) {
+        if(!instruction.hasReturnValue()) {
+            code.append("return");
+            return;
+        }
 
         switch (instruction.getOperand().getType().getTypeOfElement()) {
             case VOID:
-                returnString = "return";
+                code.append("return");
                 break;
             case INT32:
             case BOOLEAN:
-                returnString = loadElement(instruction.getOperand(), varTable);
+                loadElement(instruction.getOperand(), varTable, code);
 
                 // value →
-                this.decrementStackCounter(1);
-                returnString += "ireturn";
+                code.append("ireturn");
                 break;
             case ARRAYREF:
             case OBJECTREF:
-                returnString = loadElement(instruction.getOperand(), varTable);
+                loadElement(instruction.getOperand(), varTable, code);
 
                 // objectref →
-                this.decrementStackCounter(1);
-                returnString  += "areturn";
+                code.append("areturn");
                 break;
             default:
                 break;
         }
-
-        return returnString;
     }
 
     private String convertType(Type type) {
@@ -510,76 +530,74 @@ public class JasminGenerator {
         return className;
     }
 
-    private String loadElement(Element element, HashMap<String, Descriptor> varTable) {
+    private void loadElement(Element element, HashMap<String, Descriptor> varTable, StringBuilder code) {
         if (element instanceof LiteralElement) {
             String num = ((LiteralElement) element).getLiteral();
-            this.incrementStackCounter(1);
-            return this.selectConstType(num) + "\n";
+            code.append(this.selectConstType(num)).append("\n");
         }
         else if (element instanceof ArrayOperand) {
             ArrayOperand operand = (ArrayOperand) element;
 
             // Load array
-            String stringBuilder = String.format("aload%s\n", this.getVirtualReg(operand.getName(), varTable));
-            this.incrementStackCounter(1);
+            code.append("aload").append(this.getVirtualReg(operand.getName(), varTable)).append("\n");
 
             // Load index
-            stringBuilder += loadElement(operand.getIndexOperands().get(0), varTable);
+            loadElement(operand.getIndexOperands().get(0), varTable, code);
 
             // ..., arrayref, index →
             // ..., value
-            this.decrementStackCounter(1);
-            return stringBuilder + "iaload\n";
+            code.append("iaload\n");
         }
         else if (element instanceof Operand) {
             Operand operand = (Operand) element;
             switch (operand.getType().getTypeOfElement()) {
                 case THIS:
-                    this.incrementStackCounter(1);
-                    return "aload_0\n";
+                    code.append("aload_0\n");
+                    break;
                 case INT32:
                 case BOOLEAN: {
-                    this.incrementStackCounter(1);
-                    return String.format("iload%s\n", this.getVirtualReg(operand.getName(), varTable));
+                    code.append("iload").append(this.getVirtualReg(operand.getName(), varTable)).append("\n");
+                    break;
                 }
                 case OBJECTREF:
                 case ARRAYREF: {
-                    this.incrementStackCounter(1);
-                    return String.format("aload%s\n", this.getVirtualReg(operand.getName(), varTable));
+                    code.append("aload").append(this.getVirtualReg(operand.getName(), varTable)).append("\n");
+                    break;
                 }
                 case CLASS: { //TODO deal with class
-                    return "";
+                    break;
                 }
                 default:
-                    return "Error in operand loadElements\n";
+                    code.append("Error in operand loadElements\n");
             }
         }
-        System.out.println(element);
-        return "Error in loadElements\n";
+        else {
+            code.append("Error in loadElements\n");
+        }
     }
 
-    private String storeElement(Operand operand, HashMap<String, Descriptor> varTable) {
+    private void storeElement(Operand operand, HashMap<String, Descriptor> varTable, StringBuilder code) {
         if (operand instanceof ArrayOperand) {
             // ..., arrayref, index, value →
-            this.decrementStackCounter(3);
-            return "iastore\n";
+            code.append("iastore\n");
+            return;
         }
 
         switch (operand.getType().getTypeOfElement()) {
             case INT32:
             case BOOLEAN: {
                 // ..., value →
-                this.decrementStackCounter(1);
-                return String.format("istore%s\n", this.getVirtualReg(operand.getName(), varTable));
+                code.append("istore").append(this.getVirtualReg(operand.getName(), varTable)).append("\n");
+                break;
             }
             case OBJECTREF:
             case ARRAYREF: {
                 // ..., objectref →
-                this.decrementStackCounter(1);
-                return String.format("astore%s\n", this.getVirtualReg(operand.getName(), varTable));
+                code.append("astore").append(this.getVirtualReg(operand.getName(), varTable)).append("\n");
+                break;
             }
             default:
-                return "Error in storeElements";
+                code.append("Error in storeElements");
         }
     }
 
@@ -606,15 +624,6 @@ public class JasminGenerator {
                             "ldc " + literal :
                         "sipush " + literal :
                     "bipush " + literal :
-                "iconst_" + literal;
-    }
-
-    private void incrementStackCounter(int add) {
-        this.stack_counter += add;
-        if (this.stack_counter > this.max_counter) this.max_counter = stack_counter;
-    }
-
-    private void decrementStackCounter(int sub) {
-        this.stack_counter -= sub;
+                literal.equals("-1") ? "iconst_m1" : "iconst_" + literal;
     }
 }
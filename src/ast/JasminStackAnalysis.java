@@ -0,0 +1,251 @@
+package ast;
+
+import ast.exceptions.StackHeightMismatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the height of the operand stack before each instruction of the Jasmin code of a method, following its jumps as
+ * the JVM verifier does, and so the exact maximum for ".limit stack".
+ * <p>
+ * Every path to an instruction must reach it with the same height, and no instruction may take more values than the
+ * stack has, otherwise the code would be rejected by the JVM and a {@link StackHeightMismatch} is thrown. It is also
+ * thrown for a line that is not an instruction the analysis knows, as its effect on the stack cannot be checked.
+ */
+public class JasminStackAnalysis {
+    private static final int UNREACHED = -1;
+
+    private final List<String[]> instructions = new ArrayList<>();
+    /** Position of the instruction after each label */
+    private final Map<String, Integer> labels = new HashMap<>();
+    /** Labels of each position, to name the place where heights do not match */
+    private final Map<Integer, String> positionLabels = new HashMap<>();
+
+    /**
+     * @param code  the instructions of a method, one per line, with labels ending in ':' on their own line and
+     *              directives (e.g. ".limit locals") ignored
+     */
+    public JasminStackAnalysis(CharSequence code) {
+        for (String line : code.toString().split("\n")) {
+            String instruction = line.trim();
+            if (instruction.isEmpty() || instruction.startsWith(".")) {
+                continue;
+            }
+
+            if (instruction.endsWith(":")) {
+                String label = instruction.substring(0, instruction.length() - 1);
+                labels.put(label, instructions.size());
+                positionLabels.putIfAbsent(instructions.size(), label);
+                continue;
+            }
+
+            instructions.add(instruction.split("\\s+", 2));
+        }
+    }
+
+    /**
+     * @return the largest number of values on the operand stack at any point of the method
+     */
+    public int getMaxStack() throws StackHeightMismatch {
+        int[] heights = new int[instructions.size()];
+        Arrays.fill(heights, UNREACHED);
+
+        int max = 0;
+        Deque<Integer> pending = new ArrayDeque<>();
+        if (!instructions.isEmpty()) {
+            heights[0] = 0;
+            pending.push(0);
+        }
+
+        while (!pending.isEmpty()) {
+            int position = pending.pop();
+            String[] instruction = instructions.get(position);
+
+            int before = heights[position];
+            int popped = getPopped(instruction);
+            if (popped > before) {
+                throw new StackHeightMismatch(describe(position) + " takes " + popped + " values from a stack of "
+                        + before);
+            }
+
+            int after = before - popped + getPushed(position, instruction);
+            max = Math.max(max, Math.max(before, after));
+
+            for (int successor : getSuccessors(position, instruction)) {
+                if (heights[successor] == UNREACHED) {
+                    heights[successor] = after;
+                    pending.push(successor);
+                } else if (heights[successor] != after) {
+                    throw new StackHeightMismatch(describe(successor) + " is reached with " + heights[successor]
+                            + " and " + after + " values on the stack");
+                }
+            }
+        }
+
+        return max;
+    }
+
+    private List<Integer> getSuccessors(int position, String[] instruction) throws StackHeightMismatch {
+        String opcode = instruction[0];
+        switch (opcode) {
+            case "return":
+            case "ireturn":
+            case "areturn":
+            case "athrow":
+                return List.of();
+            case "goto":
+                return List.of(getTarget(instruction));
+            default:
+                if (opcode.startsWith("if")) {
+                    return next(position, getTarget(instruction));
+                }
+                return next(position, UNREACHED);
+        }
+    }
+
+    private List<Integer> next(int position, int target) {
+        List<Integer> successors = new ArrayList<>(2);
+        if (position + 1 < instructions.size()) successors.add(position + 1);
+        if (target != UNREACHED) successors.add(target);
+        return successors;
+    }
+
+    private int getTarget(String[] instruction) throws StackHeightMismatch {
+        Integer target = instruction.length > 1 ? labels.get(instruction[1].trim()) : null;
+        if (target == null) {
+            throw new StackHeightMismatch("No label for " + String.join(" ", instruction));
+        }
+        return target;
+    }
+
+    private String describe(int position) {
+        String label = positionLabels.get(position);
+        String instruction = String.join(" ", instructions.get(position));
+        return label != null ? "Label " + label + " (" + instruction + ")" : "Instruction " + position + " (" + instruction + ")";
+    }
+
+    /**
+     * @return the number of values the instruction takes from the stack
+     */
+    private static int getPopped(String[] instruction) {
+        String opcode = instruction[0];
+        if (opcode.startsWith("invoke")) {
+            return getArgumentCount(instruction[1]) + (opcode.equals("invokestatic") ? 0 : 1);
+        }
+        if (opcode.startsWith("if_")) {
+            return 2;
+        }
+        if (opcode.startsWith("if")) {
+            return 1;
+        }
+        if (opcode.startsWith("istore") || opcode.startsWith("astore")) {
+            return 1;
+        }
+
+        switch (opcode) {
+            case "iadd":
+            case "isub":
+            case "imul":
+            case "idiv":
+            case "iand":
+            case "ior":
+            case "ixor":
+            case "iaload":
+            case "putfield":
+                return 2;
+            case "iastore":
+                return 3;
+            case "ineg":
+            case "newarray":
+            case "arraylength":
+            case "getfield":
+            case "pop":
+            case "dup":
+            case "ireturn":
+            case "areturn":
+            case "athrow":
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return the number of values the instruction leaves on the stack, after taking its operands
+     */
+    private int getPushed(int position, String[] instruction) throws StackHeightMismatch {
+        String opcode = instruction[0];
+        if (opcode.startsWith("invoke")) {
+            return instruction[1].endsWith(")V") ? 0 : 1;
+        }
+        if (opcode.startsWith("iconst") || opcode.startsWith("iload") || opcode.startsWith("aload")) {
+            return 1;
+        }
+
+        switch (opcode) {
+            case "bipush":
+            case "sipush":
+            case "ldc":
+            case "new":
+            case "iadd":
+            case "isub":
+            case "imul":
+            case "idiv":
+            case "iand":
+            case "ior":
+            case "ixor":
+            case "ineg":
+            case "iaload":
+            case "newarray":
+            case "arraylength":
+            case "getfield":
+                return 1;
+            case "dup":
+                return 2;
+            case "return":
+            case "ireturn":
+            case "areturn":
+            case "athrow":
+            case "goto":
+            case "pop":
+            case "iinc":
+            case "putfield":
+            case "iastore":
+                return 0;
+            default:
+                if (opcode.startsWith("if") || opcode.startsWith("istore") || opcode.startsWith("astore")) {
+                    return 0;
+                }
+                throw new StackHeightMismatch(describe(position) + " is not a known instruction");
+        }
+    }
+
+    /**
+     * @param method    the method of an invoke instruction, e.g. "io.println(I)V"
+     * @return the number of arguments in its descriptor
+     */
+    private static int getArgumentCount(String method) {
+        int count = 0;
+        int i = method.indexOf('(') + 1;
+        while (method.charAt(i) != ')') {
+            char type = method.charAt(i);
+            if (type == '[') {
+                i++;
+                continue;
+            }
+
+            if (type == 'L') {
+                i = method.indexOf(';', i);
+            }
+            count++;
+            i++;
+        }
+        return count;
+    }
+}
@@ -4,30 +4,54 @@ import ast.exceptions.*;
 import pt.up.fe.comp.jmm.JmmNode;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp.jmm.analysis.table.Types;
+import pt.up.fe.comp.jmm.ast.ControlledJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * Counts the occurrences of each node kind.
- *
- * @author JBispo
+ * Checks the types of the expressions and statements.
+ * <p>
+ * Each handler visits the children it needs itself, so every node is analysed once.
  */
-public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry<String, String>> {
+public class JmmExpressionAnalyser extends ControlledJmmVisitor<Boolean, Map.Entry<String, String>> {
+    // Results of the visits that do not name a type
+    private static final Set<String> NO_TYPE_NAMES = Set.of("error", "access", "method", "index", "length");
+
     private final JmmSymbolTable table;
     private final List<Report> reports;
+    private final NodeAnnotations annotations;
     private String scope;
     private JmmMethod currentMethod;
+    // Names of the array types, built once per type
+    private final Map<Type, String> arrayTypeNames = new IdentityHashMap<>();
+    // Variables initialized by the analysed assignments, kept here until they are saved in the symbol table
+    private final Map<JmmMethod, Set<Symbol>> initializedLocals = new IdentityHashMap<>();
+    private final Set<Symbol> initializedFields;
 
     public JmmExpressionAnalyser(JmmSymbolTable table, List<Report> reports) {
+        this(table, reports, table.getAnnotations(), Collections.emptySet());
+    }
+
+    /**
+     * Analyser that only reads the symbol table, so several can analyse different methods of the same class at once
+     * @param annotations           where the types and symbols resolved for the nodes are kept
+     * @param initializedFields     class fields initialized before the analysed nodes (e.g. by the methods before them)
+     */
+    public JmmExpressionAnalyser(JmmSymbolTable table, List<Report> reports, NodeAnnotations annotations, Set<Symbol> initializedFields) {
         this.table = table;
         this.reports = reports;
+        this.annotations = annotations;
+        this.initializedFields = new HashSet<>(initializedFields);
 
         // DATA -> <return type, result (expression eval)>
 
@@ -57,7 +81,7 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
 
 
     private Map.Entry<String, String> dealWithArrayAccess(JmmNode node, Boolean data) {
-        JmmNode index = node.getChildren().get(0);
+        JmmNode index = node.getChild(0);
         Map.Entry<String, String> indexReturn = visit(index, true);
 
         if (!indexReturn.getKey().equals("int")) {
@@ -69,7 +93,7 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
     }
 
     private Map.Entry<String, String> dealWithArrayInit(JmmNode node, Boolean data) {
-        JmmNode size = node.getChildren().get(0);
+        JmmNode size = node.getChild(0);
         Map.Entry<String, String> sizeReturn = visit(size, true);
 
         if (!sizeReturn.getKey().equals("int")) {
@@ -77,11 +101,12 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
             return Map.entry("error", "null");
         }
 
+        annotations.putType(node, Types.INT_ARRAY);
         return Map.entry("int []", "null");
     }
 
     private Map.Entry<String, String> dealConditionalExpression(JmmNode node, Boolean data) {
-        JmmNode condition = node.getChildren().get(0);
+        JmmNode condition = node.getChild(0);
         Map.Entry<String, String> conditionReturn = visit(condition, true);
 
         Map.Entry<String, String> dataReturn = Map.entry("boolean", "null");
@@ -94,13 +119,39 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
         return dataReturn;
     }
 
-    private Map.Entry<String, String> dealWithRelationalExpression(JmmNode node, Boolean data) {
-        JmmNode left = node.getChildren().get(0);
-        JmmNode right = node.getChildren().get(1);
+    /**
+     * Visits a left-deep chain of operations of the same kind (e.g. a + b + c) in a loop, from the innermost one, with
+     * the same checks and in the same order as if each operation visited its operands
+     */
+    private Map.Entry<String, String> visitLeftChain(JmmNode node, Boolean data, OperandsCheck check) {
+        List<JmmNode> chain = getLeftChain(node);
 
+        JmmNode left = chain.get(chain.size() - 1).getChild(0);
         Map.Entry<String, String> leftReturn = visit(left, true);
-        Map.Entry<String, String> rightReturn = visit(right, true);
 
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            JmmNode operation = chain.get(i);
+            JmmNode right = operation.getChild(1);
+            Map.Entry<String, String> rightReturn = visit(right, true);
+
+            // Only the outermost operation is not an operand
+            leftReturn = check.apply(left, leftReturn, right, rightReturn, i == 0 ? data : Boolean.TRUE);
+            annotate(operation, leftReturn.getKey());
+            left = operation;
+        }
+
+        return leftReturn;
+    }
+
+    private interface OperandsCheck {
+        Map.Entry<String, String> apply(JmmNode left, Map.Entry<String, String> leftReturn, JmmNode right, Map.Entry<String, String> rightReturn, Boolean data);
+    }
+
+    private Map.Entry<String, String> dealWithRelationalExpression(JmmNode node, Boolean data) {
+        return visitLeftChain(node, data, this::checkRelationalExpression);
+    }
+
+    private Map.Entry<String, String> checkRelationalExpression(JmmNode left, Map.Entry<String, String> leftReturn, JmmNode right, Map.Entry<String, String> rightReturn, Boolean data) {
         Map.Entry<String, String> dataReturn = Map.entry("boolean", "null");
 
         if (!leftReturn.getValue().equals("true") && left.getKind().equals("Variable")) {
@@ -137,12 +188,10 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
     }
 
     private Map.Entry<String, String> dealWithAndExpression(JmmNode node, Boolean data) {
-        JmmNode left = node.getChildren().get(0);
-        JmmNode right = node.getChildren().get(1);
-
-        Map.Entry<String, String> leftReturn = visit(left, true);
-        Map.Entry<String, String> rightReturn = visit(right, true);
+        return visitLeftChain(node, data, this::checkAndExpression);
+    }
 
+    private Map.Entry<String, String> checkAndExpression(JmmNode left, Map.Entry<String, String> leftReturn, JmmNode right, Map.Entry<String, String> rightReturn, Boolean data) {
         Map.Entry<String, String> dataReturn = Map.entry("boolean", "null");
 
         if (!leftReturn.getValue().equals("true") && left.getKind().equals("Variable")) {
@@ -179,7 +228,7 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
     }
 
     private Map.Entry<String, String> dealWithNotExpression(JmmNode node, Boolean data) {
-        JmmNode bool = node.getChildren().get(0);
+        JmmNode bool = node.getChild(0);
 
         Map.Entry<String, String> boolReturn = visit(bool, true);
 
@@ -199,6 +248,7 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
             }
         }
 
+        annotate(node, dataReturn.getKey());
         if (dataReturn.getKey().equals("boolean")) {
             return dataReturn;
         } else {
@@ -207,12 +257,10 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
     }
 
     private Map.Entry<String, String> dealWithBinaryOperation(JmmNode node, Boolean data) {
-        JmmNode left = node.getChildren().get(0);
-        JmmNode right = node.getChildren().get(1);
-
-        Map.Entry<String, String> leftReturn = visit(left, true);
-        Map.Entry<String, String> rightReturn = visit(right, true);
+        return visitLeftChain(node, data, this::checkBinaryOperation);
+    }
 
+    private Map.Entry<String, String> checkBinaryOperation(JmmNode left, Map.Entry<String, String> leftReturn, JmmNode right, Map.Entry<String, String> rightReturn, Boolean data) {
         Map.Entry<String, String> dataReturn = Map.entry("int", "null");
 
         if (!leftReturn.getValue().equals("true") && left.getKind().equals("Variable")) {
@@ -264,38 +312,46 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
                 break;
         }
 
+        annotate(node, return_type);
         return Map.entry(return_type, "true");
     }
 
     private Map.Entry<String, String> dealWithVariable(JmmNode node, Boolean data) {
         Map.Entry<Symbol, Boolean> field = null;
+        boolean classField = false;
 
         if (scope.equals("CLASS")) {
+            classField = true;
             field = table.getField(node.get("name"));
         } else if (scope.equals("METHOD") && currentMethod != null) {
             field = currentMethod.getField(node.get("name"));
             if (field == null) {
+                classField = true;
                 field = table.getField(node.get("name"));
             }
         }
 
         if (field == null && table.getImports().contains(node.get("name"))) {
+            annotations.putType(node, Types.of(node.get("name"), false));
             return Map.entry("access", "true");
         } else if (field == null && node.get("name").equals("this")) {
+            annotations.putType(node, Types.of(table.getClassName(), false));
             return Map.entry("method", "true");
         }
 
         if (field == null) {
             return Map.entry("error", "null");
         } else {
-            return Map.entry(field.getKey().getType().getName() + (field.getKey().getType().isArray() ? " []" : ""), field.getValue() ? "true" : "null");
+            annotations.putVariable(node, field.getKey(), classField);
+            annotations.putType(node, field.getKey().getType());
+            return Map.entry(typeName(field.getKey().getType()), isInitialized(field, classField) ? "true" : "null");
         }
     }
 
 
     private Map.Entry<String, String> dealWithClassDeclaration(JmmNode node, Boolean data) {
         scope = "CLASS";
-        return null;
+        return visitChildren(node, data);
     }
 
 
@@ -311,25 +367,31 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
             e.printStackTrace();
         }
 
-        return null;
+        return visitChildren(node, data);
     }
 
     private Map.Entry<String, String> dealWithMainDeclaration(JmmNode node, Boolean data) {
         scope = "METHOD";
 
         try {
-            currentMethod = table.getMethod("main", Arrays.asList(new Type("String", true)), new Type("void", false));
+            currentMethod = table.getMethod("main", Collections.singletonList(Types.STRING_ARRAY), Types.VOID);
         } catch (Exception e) {
             currentMethod = null;
             e.printStackTrace();
         }
 
-        return null;
+        return visitChildren(node, data);
     }
 
     private Map.Entry<String, String> dealWithAccessExpression(JmmNode node, Boolean requested) {
-        JmmNode target = node.getChildren().get(0);
-        JmmNode method = node.getChildren().get(1);
+        Map.Entry<String, String> accessReturn = checkAccessExpression(node, requested);
+        annotate(node, accessReturn.getKey());
+        return accessReturn;
+    }
+
+    private Map.Entry<String, String> checkAccessExpression(JmmNode node, Boolean requested) {
+        JmmNode target = node.getChild(0);
+        JmmNode method = node.getChild(1);
 
         Map.Entry<String, String> targetReturn = visit(target, true);
         Map.Entry<String, String> methodReturn = visit(method, true);
@@ -378,21 +440,10 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
             return Map.entry("length", "null");
         }
 
-        List<JmmNode> children = node.getChildren();
-        List<Type> params = getParametersList(children);
-
-        String method = node.get("value");
-        if (params.size() > 0) {
-            for (Type param : params) {
-                method += "::" + param.getName() + ":" + (param.isArray() ? "true" : "false");
-            }
-        }
-
-        Type returnType = table.getReturnType(method);
-
-        try {
-            table.getMethod(node.get("value"), params, returnType);
-        } catch (Exception e) {
+        List<Type> params = getParametersList(node);
+        JmmMethod method = params == null ? null : table.getMethod(new MethodSignature(node.get("value"), params));
+        annotations.putMethod(node, method);
+        if (method == null) {
             if (this.table.getSuper() == null) {
                 return Map.entry("error", "noSuchMethod");
             } else {
@@ -400,115 +451,163 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
             }
         }
 
-        return Map.entry("method", returnType.getName() + (returnType.isArray() ? " []" : ""));
+        return Map.entry("method", typeName(method.getReturnType()));
+    }
+
+    /**
+     * @return the name of the type as in the results of the visits, e.g. "int []" for an array of integers
+     */
+    private String typeName(Type type) {
+        if (!type.isArray()) {
+            return type.getName();
+        }
+        return arrayTypeNames.computeIfAbsent(type, arrayType -> arrayType.getName() + " []");
+    }
+
+    /**
+     * Keeps the type of the expression for the OLLIR generation, unless the analysis did not find one
+     */
+    private void annotate(JmmNode expression, String typeName) {
+        Type type = toType(typeName);
+        if (type != null) {
+            annotations.putType(expression, type);
+        }
+    }
+
+    /**
+     * @return the canonical type named in the result of a visit, see {@link #typeName(Type)}, or null if the result
+     * names no type, so that these names are never pooled
+     */
+    private static Type toType(String typeName) {
+        if (NO_TYPE_NAMES.contains(typeName)) {
+            return null;
+        }
+        if (typeName.endsWith(" []")) {
+            return Types.of(typeName.substring(0, typeName.length() - 3), true);
+        }
+        return Types.of(typeName, false);
     }
 
-    private List<Type> getParametersList(List<JmmNode> children) {
-        //TODO - visitor para os parametros em vez disto maybe
+    /**
+     * @return the types of the arguments of the call, or null if one of them has no type
+     */
+    private List<Type> getParametersList(JmmNode call) {
         List<Type> params = new ArrayList<>();
-        for (JmmNode child : children) {
-            switch (child.getKind()) {
-                case "IntegerLiteral":
-                    params.add(new Type("int", false));
-                    break;
-                case "BooleanLiteral":
-                    params.add(new Type("boolean", false));
-                    break;
-                case "Variable":
-                case "AccessExpression":
-                case "BinaryOperation":
-                    Map.Entry<String, String> var = visit(child, true);
-                    String[] type = var.getKey().split(" ");
-                    params.add(new Type(type[0], type.length == 2));
-                    break;
-                default:
-                    break;
-            }
+        for (int i = 0; i < call.getNumChildren(); i++) {
+            JmmNode child = call.getChild(i);
+            Map.Entry<String, String> childReturn = visit(child, true);
+
+            // The type kept for the argument, when there is one, also names this class for "this"
+            Type type = annotations.getType(child);
+            if (type == null) type = toType(childReturn.getKey());
+            if (type == null) params = null;
+            else if (params != null) params.add(type);
         }
         return params;
     }
 
     private Map.Entry<String, String> dealWithAssignment(JmmNode node, Boolean space) {
-        List<JmmNode> children = node.getChildren();
-
-        if (children.size() == 1) {
-            Map.Entry<String, String> assignment = visit(node.getChildren().get(0), true);
+        if (node.getNumChildren() == 1) {
+            Map.Entry<String, String> assignment = visit(node.getChild(0), true);
 
             if (assignment.getKey().equals("error")) {
-                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Undeclared Variable: " + node.getChildren().get(0)));
+                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Undeclared Variable: " + node.getChild(0)));
                 return null;
             }
 
-            Map.Entry<Symbol, Boolean> variable;
-            if ((variable = currentMethod.getField(node.get("variable"))) == null) {
-                variable = table.getField(node.get("variable"));
-            }
+            Map.Entry<Symbol, Boolean> variable = getAssignedVariable(node);
 
             // IF assignment is related to an access to an imported static method
             if (assignment.getKey().equals("access")) {
-                variable.setValue(true);
+                initialize(variable.getKey());
                 return null;
             }
 
-            String[] parts = assignment.getKey().split(" ");
-
             // Matching Types
-            if (variable.getKey().getType().getName().equals(parts[0])) {
-                if (!(parts.length == 2 && variable.getKey().getType().isArray()) && !(parts.length == 1 && !variable.getKey().getType().isArray())) {
-                    reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Mismatched types: " + variable.getKey().getType() + " and " + assignment.getKey()));
-                    return null;
-                }
-            } else {
+            if (!variable.getKey().getType().equals(toType(assignment.getKey()))) {
                 reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Mismatched types: " + variable.getKey().getType() + " and " + assignment.getKey()));
                 return null;
             }
 
-            if (!currentMethod.initializeField(variable.getKey())) {
-                table.initializeField(variable.getKey());
-            }
+            initialize(variable.getKey());
 
         } else {
+            visitChildren(node, space);
+
             Map.Entry<Symbol, Boolean> array;
             if ((array = currentMethod.getField(node.get("variable"))) == null) {
                 array = table.getField(node.get("variable"));
             }
 
-            Map.Entry<Symbol, Boolean> variable;
-            if ((variable = currentMethod.getField(node.get("variable"))) == null) {
-                variable = table.getField(node.get("variable"));
-            }
+            Map.Entry<Symbol, Boolean> variable = getAssignedVariable(node);
 
             if (!array.getKey().getType().equals(variable.getKey().getType())) {
                 reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Mismatched types: " + variable.getKey().getType() + " and " + array.getKey().getType()));
             } else {
-                if (!currentMethod.initializeField(variable.getKey())) {
-                    table.initializeField(variable.getKey());
-                }
+                initialize(variable.getKey());
             }
         }
 
         return null;
     }
 
+    /**
+     * @return the class fields initialized before or by the analysed nodes
+     */
+    public Set<Symbol> getInitializedFields() {
+        return initializedFields;
+    }
+
+    /**
+     * Marks the variables initialized by the analysed assignments as initialized in the symbol table
+     */
+    public void saveInitializedVariables() {
+        initializedLocals.forEach((method, locals) -> locals.forEach(method::initializeField));
+        initializedFields.forEach(table::initializeField);
+    }
+
+    private void initialize(Symbol variable) {
+        if (currentMethod.hasLocalVariable(variable)) {
+            initializedLocals.computeIfAbsent(currentMethod, method -> new HashSet<>()).add(variable);
+        } else if (table.hasField(variable)) {
+            initializedFields.add(variable);
+        }
+    }
+
+    private boolean isInitialized(Map.Entry<Symbol, Boolean> variable, boolean classField) {
+        if (variable.getValue()) {
+            return true;
+        }
+        if (classField) {
+            return initializedFields.contains(variable.getKey());
+        }
+
+        Set<Symbol> locals = initializedLocals.get(currentMethod);
+        return locals != null && locals.contains(variable.getKey());
+    }
+
+    private Map.Entry<Symbol, Boolean> getAssignedVariable(JmmNode assignment) {
+        Map.Entry<Symbol, Boolean> variable;
+        boolean classField = false;
+        if ((variable = currentMethod.getField(assignment.get("variable"))) == null) {
+            variable = table.getField(assignment.get("variable"));
+            classField = true;
+        }
+
+        if (variable != null) {
+            annotations.putVariable(assignment, variable.getKey(), classField);
+        }
+        return variable;
+    }
+
     private Map.Entry<String, String> dealWithReturn(JmmNode node, Boolean space) {
-        String returnType = visit(node.getChildren().get(0), true).getKey();
+        String returnType = visit(node.getChild(0), true).getKey();
 
         if (returnType.equals("access")) {
             return null;
         }
 
-        String[] parts = returnType.split(" ");
-        if (parts.length == 2 && currentMethod.getReturnType().isArray()) {
-            if (!parts[0].equals(currentMethod.getReturnType().getName())) {
-                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Return type mismatch"));
-            }
-            return null;
-        } else if (parts.length == 1 && !currentMethod.getReturnType().isArray()) {
-            if (!parts[0].equals(currentMethod.getReturnType().getName())) {
-                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Return type mismatch"));
-            }
-            return null;
-        } else {
+        if (!currentMethod.getReturnType().equals(toType(returnType))) {
             reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Return type mismatch"));
         }
 
@@ -516,6 +615,7 @@ public class JmmExpressionAnalyser extends PreorderJmmVisitor<Boolean, Map.Entry
     }
 
     private Map.Entry<String, String> dealWithNewObject(JmmNode node, Boolean data) {
+        annotations.putType(node, Types.of(node.get("value"), false));
         return Map.entry(node.get("value"), "object");
     }
 }
@@ -4,6 +4,7 @@ import ast.exceptions.WrongArgumentType;
 import org.specs.comp.ollir.OllirAccesser;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.analysis.table.Types;
 import pt.up.fe.comp.jmm.ollir.OllirUtils;
 
 import java.util.*;
@@ -12,9 +13,14 @@ public class JmmMethod {
     private String name;
     private Type returnType;
     private final List<Map.Entry<Symbol, String>> parameters = new ArrayList<>();
+    // Parameters by name (the first one, if several have the same name) and the position of each parameter
+    private final Map<String, Symbol> parametersByName = new HashMap<>();
+    private final Map<Symbol, Integer> parameterPositions = new IdentityHashMap<>();
 
     // Map from Symbol to Value -> null if the field is not initialized yet
     private final Map<Symbol, Boolean> localVariables = new HashMap<>();
+    // Local variables by name, as there cannot be two local variables with the same name
+    private final Map<String, Symbol> localVariablesByName = new HashMap<>();
 
     public JmmMethod(String name, Type returnType) {
         this.name = name;
@@ -30,8 +36,13 @@ public class JmmMethod {
         return params;
     }
 
+    public MethodSignature getSignature() {
+        return new MethodSignature(name, getParameterTypes());
+    }
+
     public void addLocalVariable(Symbol variable) {
         localVariables.put(variable, false);
+        localVariablesByName.putIfAbsent(variable.getName(), variable);
     }
 
     public String getName() {
@@ -50,32 +61,39 @@ public class JmmMethod {
         this.returnType = returnType;
     }
 
+    /**
+     * Adds a parameter to this method. For a method of the symbol table, see {@link JmmSymbolTable#addParameter(Symbol)}
+     */
     public void addParameter(Symbol param) {
         this.parameters.add(Map.entry(param, "param"));
+        parametersByName.putIfAbsent(param.getName(), param);
+        parameterPositions.putIfAbsent(param, this.parameters.size());
     }
 
     public boolean fieldExists(String field) {
-        for (Symbol localVariable : this.localVariables.keySet()) {
-            if (localVariable.getName().equals(field))
-                return true;
-        }
-        return false;
+        return localVariablesByName.containsKey(field);
     }
 
+    /**
+     * @return the local variable or else the parameter with the given name, and whether it is initialized, or null if
+     * there is none
+     */
     public Map.Entry<Symbol, Boolean> getField(String name) {
-        for (Map.Entry<Symbol, Boolean> field : this.localVariables.entrySet()) {
-            if (field.getKey().getName().equals(name))
-                return field;
-        }
+        Symbol localVariable = localVariablesByName.get(name);
+        if (localVariable != null)
+            return Map.entry(localVariable, localVariables.get(localVariable));
 
-        for (Map.Entry<Symbol, String> param : this.parameters) {
-            if (param.getKey().getName().equals(name))
-                return Map.entry(param.getKey(), true);
-        }
+        Symbol param = parametersByName.get(name);
+        if (param != null)
+            return Map.entry(param, true);
 
         return null;
     }
 
+    public boolean hasLocalVariable(Symbol symbol) {
+        return this.localVariables.containsKey(symbol);
+    }
+
     public boolean initializeField(Symbol symbol) {
         if (this.localVariables.containsKey(symbol)) {
             this.localVariables.put(symbol, true);
@@ -132,19 +150,15 @@ public class JmmMethod {
 
         for (String s : typesString) {
             String[] aux = s.split(" ");
-            types.add(new Type(aux[0], aux.length == 2));
+            types.add(Types.of(aux[0], aux.length == 2));
         }
 
         return types;
     }
 
     public String isParameter(Symbol symbol) {
-        for (int i = 1; i < this.parameters.size() + 1; i++) {
-            if (parameters.get(i - 1).getKey() == symbol) {
-                return "$" + i;
-            }
-        }
-        return null;
+        Integer position = parameterPositions.get(symbol);
+        return position != null ? "$" + position : null;
     }
 
     public List<String> parametersToOllir() {
@@ -44,9 +44,7 @@ public class JmmSemanticPreorderVisitor extends PreorderJmmVisitor<String, Boole
     }
 
     private void verifyInt(JmmNode node) {
-        List<JmmNode> children = node.getChildren();
-
-        System.out.println("LEFT: " + children.get(0));
-        System.out.println("RIGHT: " + children.get(1));
+        System.out.println("LEFT: " + node.getChild(0));
+        System.out.println("RIGHT: " + node.getChild(1));
     }
 }
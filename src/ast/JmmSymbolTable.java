@@ -5,6 +5,7 @@ import pt.up.fe.comp.jmm.JmmNode;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.analysis.table.Types;
 
 import java.util.*;
 
@@ -14,19 +15,22 @@ public class JmmSymbolTable implements SymbolTable {
     private String superClassName;
     // Map from Symbol to Value -> null if the field is not initialized yet
     private final Map<Symbol, Boolean> fields = new HashMap<>();
+    // Fields by name, as there cannot be two fields with the same name
+    private final Map<String, Symbol> fieldsByName = new HashMap<>();
     private final List<JmmMethod> methods = new ArrayList<>();
+    // Methods by name, and by name and parameter types, in the order they were declared
+    private final Map<String, List<JmmMethod>> methodsByName = new HashMap<>();
+    private final Map<MethodSignature, List<JmmMethod>> methodsBySignature = new HashMap<>();
     private JmmMethod currentMethod;
+    // What the semantic analysis resolved for each node
+    private final NodeAnnotations annotations = new NodeAnnotations();
 
     public static Type getType(JmmNode node, String attribute) {
-        Type type;
-        if (node.get(attribute).equals("int[]"))
-            type = new Type("int", true);
-        else if (node.get(attribute).equals("int"))
-            type = new Type("int", false);
-        else
-            type = new Type(node.get(attribute), false);
+        String type = node.get(attribute);
+        if (type.equals("int[]"))
+            return Types.INT_ARRAY;
 
-        return type;
+        return Types.of(type, false);
     }
 
     public void setClassName(String className) {
@@ -43,34 +47,44 @@ public class JmmSymbolTable implements SymbolTable {
 
     public void addField(Symbol field) {
         fields.put(field, false);
+        fieldsByName.putIfAbsent(field.getName(), field);
     }
 
     public boolean fieldExists(String name) {
-        for (Symbol field : this.fields.keySet()) {
-            if (field.getName().equals(name))
-                return true;
-        }
-        return false;
+        return fieldsByName.containsKey(name);
     }
 
     public JmmMethod getMethod(String name, List<Type> params, Type returnType) throws NoSuchMethod {
-        for (JmmMethod method : methods) {
-            if (method.getName().equals(name) && returnType.equals(method.getReturnType()) && params.size() == method.getParameters().size()) {
-                if (JmmMethod.matchParameters(params, method.getParameterTypes())) {
-                    return method;
-                }
+        for (JmmMethod method : methodsBySignature.getOrDefault(new MethodSignature(name, params), Collections.emptyList())) {
+            if (returnType.equals(method.getReturnType())) {
+                return method;
             }
         }
 
         throw new NoSuchMethod(name);
     }
 
+    /**
+     * Resolves a call with the given signature to the first method declared with it
+     * @return the method, or null if no method of this class has the given signature
+     */
+    public JmmMethod getMethod(MethodSignature signature) {
+        List<JmmMethod> sameSignature = methodsBySignature.get(signature);
+        return sameSignature != null ? sameSignature.get(0) : null;
+    }
+
+    /**
+     * @return the field and whether it is initialized, or null if there is no field with the given name
+     */
     public Map.Entry<Symbol, Boolean> getField(String name) {
-        for (Map.Entry<Symbol, Boolean> field : this.fields.entrySet()) {
-            if (field.getKey().getName().equals(name))
-                return field;
-        }
-        return null;
+        Symbol field = fieldsByName.get(name);
+        if (field == null)
+            return null;
+        return Map.entry(field, fields.get(field));
+    }
+
+    public boolean hasField(Symbol symbol) {
+        return this.fields.containsKey(symbol);
     }
 
     public boolean initializeField(Symbol symbol) {
@@ -84,6 +98,22 @@ public class JmmSymbolTable implements SymbolTable {
     public void addMethod(String name, Type returnType) {
         currentMethod = new JmmMethod(name, returnType);
         methods.add(currentMethod);
+        methodsByName.computeIfAbsent(name, key -> new ArrayList<>()).add(currentMethod);
+        methodsBySignature.computeIfAbsent(currentMethod.getSignature(), key -> new ArrayList<>()).add(currentMethod);
+    }
+
+    /**
+     * Adds a parameter to the current method, which is then found by its new parameter types
+     */
+    public void addParameter(Symbol param) {
+        MethodSignature signature = currentMethod.getSignature();
+        List<JmmMethod> sameSignature = methodsBySignature.get(signature);
+        sameSignature.removeIf(method -> method == currentMethod);
+        if (sameSignature.isEmpty())
+            methodsBySignature.remove(signature);
+
+        currentMethod.addParameter(param);
+        methodsBySignature.computeIfAbsent(currentMethod.getSignature(), key -> new ArrayList<>()).add(currentMethod);
     }
 
     @Override
@@ -140,50 +170,28 @@ public class JmmSymbolTable implements SymbolTable {
         return currentMethod;
     }
 
+    public NodeAnnotations getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * @param methodName  the name of the method, or its signature as in {@link MethodSignature#parse(String)}
+     */
     @Override
     public Type getReturnType(String methodName) {
-        List<Type> params = new ArrayList<>();
-        String[] parts = methodName.split("::");
-        methodName = parts[0];
-
-        if (parts.length > 1) {
-            for (int i = 1; i < parts.length; i++) {
-                String[] parts2 = parts[i].split(":");
-                params.add(new Type(parts2[0], parts2[1].equals("true")));
-            }
-        } else {
-            for (JmmMethod method : methods) {
-                if(method.getName().equals(methodName)) {
-                    return method.getReturnType();
-                }
-            }
+        if (methodName.contains("::")) {
+            JmmMethod method = getMethod(MethodSignature.parse(methodName));
+            return method != null ? method.getReturnType() : null;
         }
 
-        for (JmmMethod method : methods) {
-            if(method.getName().equals(methodName)) {
-                List<Symbol> currentparams = method.getParameters();
-                boolean found = true;
-                if (currentparams.size() != params.size()) continue;
-                for (int i=0; i<params.size(); i++) {
-                    if (!currentparams.get(i).getType().equals(params.get(i))) {
-                        found = false;
-                        break;
-                    }
-                }
-                if (found) return method.getReturnType();
-            }
-        }
-        return null;
+        List<JmmMethod> sameName = methodsByName.get(methodName);
+        return sameName != null ? sameName.get(0).getReturnType() : null;
     }
 
     @Override
     public List<Symbol> getParameters(String methodName) {
-        for (JmmMethod method : this.methods){
-            if (method.getName().equals(methodName)){
-                return method.getParameters();
-            }
-        }
-        return null;
+        List<JmmMethod> sameName = methodsByName.get(methodName);
+        return sameName != null ? sameName.get(0).getParameters() : null;
     }
 
     @Override
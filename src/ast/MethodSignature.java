@@ -0,0 +1,68 @@
+package ast;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.analysis.table.Types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Name and parameter types of a method, used to find the methods of the symbol table. Immutable, with its hash
+ * computed once, so it can be looked up many times (e.g. once per call site) without rebuilding it.
+ */
+public final class MethodSignature {
+    private final String name;
+    private final List<Type> parameterTypes;
+    private final int hash;
+
+    public MethodSignature(String name, List<Type> parameterTypes) {
+        this.name = name;
+        this.parameterTypes = List.copyOf(parameterTypes);
+        this.hash = 31 * name.hashCode() + this.parameterTypes.hashCode();
+    }
+
+    /**
+     * @param signature  method name followed by each parameter as "::type:isArray", e.g. "sum::int:true::int:false"
+     */
+    public static MethodSignature parse(String signature) {
+        String[] parts = signature.split("::");
+
+        List<Type> parameterTypes = new ArrayList<>();
+        for (int i = 1; i < parts.length; i++) {
+            String[] type = parts[i].split(":");
+            parameterTypes.add(Types.of(type[0], type[1].equals("true")));
+        }
+
+        return new MethodSignature(parts[0], parameterTypes);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Type> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MethodSignature that = (MethodSignature) o;
+        return hash == that.hash && name.equals(that.name) && parameterTypes.equals(that.parameterTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(name);
+        for (Type type : parameterTypes) {
+            builder.append("::").append(type.getName()).append(":").append(type.isArray());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package ast;
+
+import pt.up.fe.comp.jmm.JmmNode;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the semantic analysis resolved for the nodes of the AST: the type of each expression, the variable of each
+ * variable and assignment, and the method of this class called by each method call. The OLLIR generation reads them
+ * instead of resolving them again. The optimizations add the value of the expressions known at compile time.
+ * <p>
+ * Nodes are kept by identity, as they have no ids and the same tree is analysed and then converted to OLLIR.
+ */
+public class NodeAnnotations {
+    private final Map<JmmNode, Type> types = new IdentityHashMap<>();
+    private final Map<JmmNode, Symbol> variables = new IdentityHashMap<>();
+    private final Set<JmmNode> classFields = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<JmmNode, JmmMethod> methods = new IdentityHashMap<>();
+    private final Map<JmmNode, String> constants = new IdentityHashMap<>();
+
+    public void putType(JmmNode expression, Type type) {
+        types.put(expression, type);
+    }
+
+    /**
+     * @return the type of the expression, or null if the analysis did not find it
+     */
+    public Type getType(JmmNode expression) {
+        return types.get(expression);
+    }
+
+    /**
+     * @param node          a variable or an assignment
+     * @param classField    true if the variable is a field of the class, false if it is a local variable or parameter
+     */
+    public void putVariable(JmmNode node, Symbol variable, boolean classField) {
+        variables.put(node, variable);
+        if (classField) {
+            classFields.add(node);
+        }
+    }
+
+    /**
+     * @return the variable named by the node, or null if it does not name one (e.g. this or an imported class)
+     */
+    public Symbol getVariable(JmmNode node) {
+        return variables.get(node);
+    }
+
+    public boolean isClassField(JmmNode node) {
+        return classFields.contains(node);
+    }
+
+    public void putMethod(JmmNode call, JmmMethod method) {
+        methods.put(call, method);
+    }
+
+    /**
+     * @return the method of this class with the name and argument types of the call, or null if there is none
+     */
+    public JmmMethod getMethod(JmmNode call) {
+        return methods.get(call);
+    }
+
+    /**
+     * @param value     the value of the expression as a literal of Java--, e.g. "7" or "true"
+     */
+    public void putConstant(JmmNode expression, String value) {
+        constants.put(expression, value);
+    }
+
+    /**
+     * @return the value of the expression found by the optimizations, or null if it is not known at compile time
+     */
+    public String getConstant(JmmNode expression) {
+        return constants.get(expression);
+    }
+
+    /**
+     * Adds the annotations of another part of the same tree
+     */
+    public void putAll(NodeAnnotations annotations) {
+        types.putAll(annotations.types);
+        variables.putAll(annotations.variables);
+        classFields.addAll(annotations.classFields);
+        methods.putAll(annotations.methods);
+        constants.putAll(annotations.constants);
+    }
+}
@@ -1,37 +1,48 @@
 package ast;
 
-import ast.exceptions.NoSuchMethod;
+import ast.ollir.*;
+import org.specs.comp.ollir.CallType;
 import pt.up.fe.comp.jmm.JmmNode;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp.jmm.analysis.table.Types;
+import pt.up.fe.comp.jmm.ast.ControlledJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.specs.util.utilities.StringLines;
 
-import java.lang.invoke.VarHandle;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * Input Data -> {scope, extra_data1, extra_data2, ...}
- * Output Data -> {OLLIR, extra_data1, extra_data2, ...}
+ * Builds the OLLIR code of the class as a tree of {@link OllirNode}, which is only printed on request.
+ * <p>
+ * Input Data -> {scope, expected_type}
+ * Output Data -> the OllirClass for the class, the value of expressions and null for statements
+ * <p>
+ * The instructions needed to compute an expression (e.g. temporaries) are added to the current method as the
+ * expression is visited, so the value returned is always the last part of the computation. Each handler visits the
+ * children it needs, so each node is visited once and in the order of the code.
  */
-public class OllirVisitor extends PreorderJmmVisitor<List<Object>, List<Object>> {
+public class OllirVisitor extends ControlledJmmVisitor<List<Object>, OllirNode> {
+    private static final Type INT = Types.INT;
+    private static final Type INT_ARRAY = Types.INT_ARRAY;
+    private static final Type BOOLEAN = Types.BOOLEAN;
+    private static final Type VOID = Types.VOID;
+
     private final JmmSymbolTable table;
+    private final NodeAnnotations annotations;
     private JmmMethod currentMethod;
+    private OllirMethod currentOllirMethod;
     private final List<Report> reports;
-    private String scope;
-    private final Set<JmmNode> visited = new HashSet<>();
 
     private int temp_sequence = 1;
     private int if_label_sequence = 1;
     private int while_label_sequence = 1;
+    private int and_label_sequence = 1;
 
     public OllirVisitor(JmmSymbolTable table, List<Report> reports) {
         super(OllirVisitor::reduce);
 
         this.table = table;
+        this.annotations = table.getAnnotations();
         this.reports = reports;
 
         addVisit("ClassDeclaration", this::dealWithClass);
@@ -50,116 +61,59 @@ public class OllirVisitor extends PreorderJmmVisitor<List<Object>, List<Object>>
         addVisit("AndExpression", this::dealWithAndExpression);
         addVisit("NotExpression", this::dealWithNotExpression);
 
-        addVisit("IfStatement", this::dealWithIfStatement);
-        addVisit("ElseStatement", this::dealWithElseStatement);
+        addVisit("IfElse", this::dealWithIfElse);
         addVisit("IfCondition", this::dealWithCondition);
 
         addVisit("While", this::dealWithWhile);
         addVisit("WhileCondition", this::dealWithCondition);
 
         addVisit("AccessExpression", this::dealWithAccessExpression);
-        addVisit("MethodCall", this::dealWithMethodCall);
-        addVisit("Length", this::dealWithMethodCall);
 
         addVisit("ArrayInit", this::dealWithArrayInit);
         addVisit("NewObject", this::dealWithNewObject);
-        addVisit("ArrayAccess", this::dealWithArrayAccess);
-
-        setDefaultVisit(this::defaultVisit);
     }
 
-    private List<Object> dealWithClass(JmmNode node, List<Object> data) {
-        scope = "CLASS";
-
-        List<String> fields = new ArrayList<>();
-        List<String> classBody = new ArrayList<>();
-
-        StringBuilder ollir = new StringBuilder();
-
-        // imports
-        for (String importStmt : this.table.getImports()) {
-            ollir.append(String.format("import %s;\n", importStmt));
-        }
-        ollir.append("\n");
+    private OllirNode dealWithClass(JmmNode node, List<Object> data) {
+        OllirClass ollirClass = new OllirClass(table.getClassName(), table.getSuper(), table.getImports());
 
-        // fields
-        for (JmmNode child : node.getChildren()) {
-            String ollirChild = (String) visit(child, Collections.singletonList("CLASS")).get(0);
-            if (ollirChild != null && !ollirChild.equals("DEFAULT_VISIT")) {
-                if (child.getKind().equals("VarDeclaration")) {
-                    fields.add(ollirChild);
-                } else {
-                    classBody.add(ollirChild);
-                }
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            OllirNode ollirChild = visit(node.getChild(i), Collections.singletonList("CLASS"));
+            if (ollirChild instanceof OllirField) {
+                ollirClass.addField((OllirField) ollirChild);
+            } else if (ollirChild instanceof OllirMethod) {
+                ollirClass.addMethod((OllirMethod) ollirChild);
             }
         }
 
-
-        ollir.append(OllirTemplates.classTemplate(table.getClassName(), table.getSuper()));
-
-        ollir.append(String.join("\n", fields)).append("\n\n");
-        ollir.append(OllirTemplates.constructor(table.getClassName())).append("\n\n");
-        ollir.append(String.join("\n\n", classBody));
-
-        ollir.append(OllirTemplates.closeBrackets());
-
-        return Collections.singletonList(ollir.toString());
+        return ollirClass;
     }
 
-    private List<Object> dealWithVarDeclaration(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
+    private OllirNode dealWithVarDeclaration(JmmNode node, List<Object> data) {
         if ("CLASS".equals(data.get(0))) {
             Map.Entry<Symbol, Boolean> variable = table.getField(node.get("identifier"));
-            return Arrays.asList(OllirTemplates.field(variable.getKey()));
+            return new OllirField(variable.getKey());
         }
-        return Arrays.asList("DEFAULT_VISIT");
+        return null;
     }
 
-    private List<Object> dealWithMainDeclaration(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        scope = "METHOD";
-
+    private OllirNode dealWithMainDeclaration(JmmNode node, List<Object> data) {
         try {
-            currentMethod = table.getMethod("main", Collections.singletonList(new Type("String", true)), new Type("void", false));
+            currentMethod = table.getMethod("main", Collections.singletonList(Types.STRING_ARRAY), VOID);
         } catch (Exception e) {
             currentMethod = null;
             e.printStackTrace();
         }
 
-        StringBuilder builder = new StringBuilder(OllirTemplates.method(
-                "main",
-                currentMethod.parametersToOllir(),
-                OllirTemplates.type(currentMethod.getReturnType()),
-                true));
-
-        List<String> body = new ArrayList<>();
-
-        for (JmmNode child : node.getChildren()) {
-            String ollirChild = (String) visit(child, Collections.singletonList("METHOD")).get(0);
-            if (ollirChild != null && !ollirChild.equals("DEFAULT_VISIT"))
-                if (ollirChild.equals("")) continue;
-            body.add(ollirChild);
-        }
+        currentOllirMethod = new OllirMethod("main", parameters(currentMethod), currentMethod.getReturnType(), true);
 
-        builder.append(String.join("\n", body));
+        node.forEachChild(this::dealWithStatement);
 
+        currentOllirMethod.addInstruction(new OllirReturn(VOID, null));
 
-        builder.append("\nret.V;");
-        builder.append(OllirTemplates.closeBrackets());
-
-        return Collections.singletonList(builder.toString());
+        return currentOllirMethod;
     }
 
-    private List<Object> dealWithMethodDeclaration(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        scope = "METHOD";
-
+    private OllirNode dealWithMethodDeclaration(JmmNode node, List<Object> data) {
         List<Type> params = JmmMethod.parseParameters(node.get("params"));
 
         try {
@@ -169,837 +123,476 @@ public class OllirVisitor extends PreorderJmmVisitor<List<Object>, List<Object>>
             e.printStackTrace();
         }
 
-        StringBuilder builder = new StringBuilder(OllirTemplates.method(
-                currentMethod.getName(),
-                currentMethod.parametersToOllir(),
-                OllirTemplates.type(currentMethod.getReturnType())));
-
-        List<String> body = new ArrayList<>();
-
-        for (JmmNode child : node.getChildren()) {
-            String ollirChild = (String) visit(child, Collections.singletonList("METHOD")).get(0);
-            if (ollirChild != null && !ollirChild.equals("DEFAULT_VISIT"))
-                if (ollirChild.equals("")) continue;
-            body.add(ollirChild);
-        }
-
-        builder.append(String.join("\n", body));
+        currentOllirMethod = new OllirMethod(currentMethod.getName(), parameters(currentMethod), currentMethod.getReturnType(), false);
 
-        builder.append(OllirTemplates.closeBrackets());
+        node.forEachChild(this::dealWithStatement);
 
-        return Collections.singletonList(builder.toString());
+        return currentOllirMethod;
     }
 
-    private List<Object> dealWithAssignment(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        Map.Entry<Symbol, Boolean> variable;
-        boolean classField = false;
-
-        if ((variable = currentMethod.getField(node.get("variable"))) == null) {
-            variable = table.getField(node.get("variable"));
-            classField = true;
+    private List<OllirOperand> parameters(JmmMethod method) {
+        List<OllirOperand> parameters = new ArrayList<>();
+        for (Symbol parameter : method.getParameters()) {
+            parameters.add(new OllirOperand(OllirTemplates.name(parameter), parameter.getType()));
         }
-        String name = !classField ? currentMethod.isParameter(variable.getKey()) : null;
-
-        String ollirVariable;
-        String ollirType;
-
-        StringBuilder ollir = new StringBuilder();
-
-        ollirVariable = OllirTemplates.variable(variable.getKey(), name);
-        ollirType = OllirTemplates.type(variable.getKey().getType());
-
-        List<Object> visitResult;
+        return parameters;
+    }
 
-        // ARRAY ACCESS
-        if (node.getChildren().size() > 1) {
-            String target = (String) visit(node.getChildren().get(0)).get(0);
-            String[] parts = target.split("\n");
-            if (parts.length > 1) {
-                for (int i = 0; i < parts.length - 1; i++) {
-                    ollir.append(parts[i]).append("\n");
-                }
+    /**
+     * Visits a statement of a method body. Expressions used as statements are only kept if they have side effects.
+     */
+    private void dealWithStatement(JmmNode node) {
+        OllirNode result = visit(node, Collections.singletonList("METHOD"));
+
+        if (result instanceof OllirCall) {
+            OllirCall call = (OllirCall) result;
+            if (call.isObjectCreation()) {
+                toElement(call);
+            } else if (call.getInvocation() != CallType.NEW && call.getInvocation() != CallType.arraylength) {
+                addInstruction(new OllirCallInstruction(call));
             }
+        }
+    }
 
-            visitResult = visit(node.getChildren().get(1), Arrays.asList(classField ? "FIELD" : "ASSIGNMENT", variable.getKey(), "ARRAY_ACCESS"));
-
-            String result = (String) visitResult.get(0);
-            String[] parts2 = result.split("\n");
-
-            if (parts2.length > 1) {
-                for (int i = 0; i < parts2.length - 1; i++) {
-                    ollir.append(parts2[i]).append("\n");
-                }
-
-                if (!classField) {
-                    String temp = "temporary" + temp_sequence++ + ".i32";
-                    ollir.append(String.format("%s :=.i32 %s;\n", temp, parts2[parts2.length - 1]));
+    private OllirNode dealWithAssignment(JmmNode node, List<Object> data) {
+        Symbol symbol = annotations.getVariable(node);
+        boolean classField = annotations.isClassField(node);
 
-                    ollir.append(String.format("%s :=%s %s;\n",
-                            OllirTemplates.arrayaccess(variable.getKey(), name, parts[parts.length - 1]),
-                            OllirTemplates.type(new Type(variable.getKey().getType().getName(), false)),
-                            temp));
-                } else {
-                    String temp = "temporary" + temp_sequence++;
+        // ARRAY ACCESS
+        if (node.getNumChildren() > 1) {
+            JmmNode index = node.getChild(0).getChild(0);
+            OllirOperand array = classField ? (OllirOperand) toElement(getField(symbol)) : local(symbol);
 
-                    ollir.append(String.format("%s :=%s %s;\n", temp + ollirType, ollirType, OllirTemplates.getfield(variable.getKey())));
+            OllirElement indexValue = toOperand(visit(index, expression(INT)));
+            OllirElement value = toElement(visit(node.getChild(1), expression(Types.of(symbol.getType().getName(), false))));
 
-                    ollir.append(String.format("%s :=%s %s;\n",
-                            OllirTemplates.arrayaccess(new Symbol(new Type("int", true), temp), null, parts[parts.length - 1]),
-                            OllirTemplates.type(new Type(variable.getKey().getType().getName(), false)),
-                            parts2[parts2.length - 1]));
-                }
-            } else {
-                if (!classField) {
-                    String temp = "temporary" + temp_sequence++ + ".i32";
-                    ollir.append(String.format("%s :=.i32 %s;\n", temp, result));
-
-                    ollir.append(String.format("%s :=%s %s;\n",
-                            OllirTemplates.arrayaccess(variable.getKey(), name, parts[parts.length - 1]),
-                            OllirTemplates.type(new Type(variable.getKey().getType().getName(), false)),
-                            temp));
-                } else {
-                    String temp = "temporary" + temp_sequence++;
-
-                    ollir.append(String.format("%s :=%s %s;\n", temp + ollirType, ollirType, OllirTemplates.getfield(variable.getKey())));
-
-                    ollir.append(String.format("%s :=%s %s;\n",
-                            OllirTemplates.arrayaccess(new Symbol(new Type("int", true), temp), null, parts[parts.length - 1]),
-                            OllirTemplates.type(new Type(variable.getKey().getType().getName(), false)),
-                            result));
-                }
-            }
+            addInstruction(new OllirAssign(new OllirArrayOperand(array, indexValue), value));
         } else {
-            visitResult = visit(node.getChildren().get(0), Arrays.asList(classField ? "FIELD" : "ASSIGNMENT", variable.getKey(), "SIMPLE"));
+            OllirNode value = visit(node.getChild(0), expression(symbol.getType()));
 
-            String result = (String) visitResult.get(0);
-            String[] parts = result.split("\n");
-
-            if (parts.length > 1) {
-                for (int i = 0; i < parts.length - 1; i++) {
-                    ollir.append(parts[i]).append("\n");
-                }
-                if (!classField) {
-                    ollir.append(String.format("%s :=%s %s;", ollirVariable, ollirType, parts[parts.length - 1]));
-                } else {
-                    if (visitResult.size() > 1 && (visitResult.get(1).equals("ARRAY_INIT") || visitResult.get(1).equals("OBJECT_INIT"))) {
-                        String temp = "temporary" + temp_sequence++ + ollirType;
-                        ollir.append(String.format("%s :=%s %s;\n", temp, ollirType, parts[parts.length - 1]));
-                        ollir.append(OllirTemplates.putfield(ollirVariable, temp));
-                    } else {
-                        ollir.append(OllirTemplates.putfield(ollirVariable, parts[parts.length - 1]));
-                    }
-                    ollir.append(";");
-                }
+            if (!classField) {
+                assign(local(symbol), (OllirExpression) value);
             } else {
-                if (!classField) {
-                    ollir.append(String.format("%s :=%s %s;", ollirVariable, ollirType, result));
-                } else {
-                    if (visitResult.size() > 1 && (visitResult.get(1).equals("ARRAY_INIT") || visitResult.get(1).equals("OBJECT_INIT"))) {
-                        String temp = "temporary" + temp_sequence++ + ollirType;
-                        ollir.append(String.format("%s :=%s %s;\n", temp, ollirType, result));
-                        ollir.append(OllirTemplates.putfield(ollirVariable, temp));
-                    } else {
-                        ollir.append(OllirTemplates.putfield(ollirVariable, result));
-                    }
-                    ollir.append(";");
-                }
+                addInstruction(new OllirPutField(field(symbol), toElement(value)));
             }
         }
 
-
-        if (visitResult.size() > 1 && visitResult.get(1).equals("OBJECT_INIT")) {
-            ollir.append("\n").append(OllirTemplates.objectinstance(variable.getKey()));
-        }
-
-        return Collections.singletonList(ollir.toString());
+        return null;
     }
 
-    private List<Object> dealWithPrimitive(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        String value;
-        String type;
-
+    private OllirNode dealWithPrimitive(JmmNode node, List<Object> data) {
         switch (node.getKind()) {
             case "IntegerLiteral":
-                value = node.get("value") + ".i32";
-                type = ".i32";
-                break;
+                return new OllirLiteral(node.get("value"), INT);
             case "BooleanLiteral":
-                value = (node.get("value").equals("true") ? "1" : "0") + ".bool";
-                type = ".bool";
-                break;
+                return new OllirLiteral(node.get("value").equals("true") ? "1" : "0", BOOLEAN);
             default:
-                value = "";
-                type = "";
-                break;
-        }
-
-        if (data.get(0).equals("RETURN")) {
-            String temp = "temporary" + temp_sequence++ + type;
-            value = String.format("%s :=%s %s;\n%s", temp, type, value, temp);
-        } else if (data.get(0).equals("CONDITION") && type.equals(".bool")) {
-            value = String.format("%s ==.bool 1.bool\n", value);
+                return null;
         }
-
-        return Collections.singletonList(value);
     }
 
-    private List<Object> dealWithBinaryOperation(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        JmmNode left = node.getChildren().get(0);
-        JmmNode right = node.getChildren().get(1);
-
-        String leftReturn = (String) visit(left, Collections.singletonList("BINARY")).get(0);
-        String rightReturn = (String) visit(right, Collections.singletonList("BINARY")).get(0);
-
-        String[] leftStmts = leftReturn.split("\n");
-        String[] rightStmts = rightReturn.split("\n");
-
-        StringBuilder ollir = new StringBuilder();
-
-        String leftSide;
-        String rightSide;
-
-        leftSide = binaryOperations(leftStmts, ollir, new Type("int", false));
-        rightSide = binaryOperations(rightStmts, ollir, new Type("int", false));
-
-        if (data == null) {
-            return Arrays.asList("DEFAULT_VISIT");
-        }
-        if (data.get(0).equals("RETURN") || data.get(0).equals("FIELD")) {
-            Symbol variable = new Symbol(new Type("int", false), "temporary" + temp_sequence++);
-            ollir.append(String.format("%s :=.i32 %s %s.i32 %s;\n", OllirTemplates.variable(variable), leftSide, node.get("operation"), rightSide));
-            ollir.append(OllirTemplates.variable(variable));
-        } else {
-            ollir.append(String.format("%s %s.i32 %s", leftSide, node.get("operation"), rightSide));
+    private OllirNode dealWithBinaryOperation(JmmNode node, List<Object> data) {
+        // a + b + c is walked in a loop from a + b, as each operation would visit its operands
+        List<JmmNode> chain = getLeftChain(node);
+        int folded = getFoldedOperation(chain);
+        OllirNode operation = folded < chain.size() ? constant(chain.get(folded))
+                : visit(chain.get(chain.size() - 1).getChild(0), expression(INT));
+        for (int i = folded - 1; i >= 0; i--) {
+            OllirElement left = toElement(operation);
+            OllirElement right = toElement(visit(chain.get(i).getChild(1), expression(INT)));
+            operation = new OllirBinaryOperation(left, chain.get(i).get("operation"), INT, right, annotations.getType(chain.get(i)));
         }
 
-        return Collections.singletonList(ollir.toString());
+        return operation;
     }
 
-    private List<Object> dealWithVariable(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        Map.Entry<Symbol, Boolean> field = null;
-
-        boolean classField = false;
-        if (scope.equals("CLASS")) {
-            classField = true;
-            field = table.getField(node.get("name"));
-        } else if (scope.equals("METHOD") && currentMethod != null) {
-            field = currentMethod.getField(node.get("name"));
-            if (field == null) {
-                classField = true;
-                field = table.getField(node.get("name"));
-            }
+    private OllirNode dealWithVariable(JmmNode node, List<Object> data) {
+        if (annotations.getConstant(node) != null) {
+            return constant(node);
         }
 
-        StringBuilder superiorOllir = null;
-        if (data.get(0).equals("ACCESS")) {
-            superiorOllir = (StringBuilder) data.get(1);
-        }
-
-        if (field != null) {
-            String name = currentMethod.isParameter(field.getKey());
-            if (classField && !scope.equals("CLASS")) {
-                StringBuilder ollir = new StringBuilder();
-                Symbol variable = new Symbol(field.getKey().getType(), "temporary" + temp_sequence++);
-                if (data.get(0).equals("CONDITION")) {
-                    ollir.append(String.format("%s :=%s %s;\n",
-                            OllirTemplates.variable(variable),
-                            OllirTemplates.type(variable.getType()),
-                            OllirTemplates.getfield(field.getKey())));
-                    ollir.append(String.format("%s ==.bool 1.bool", OllirTemplates.variable(variable)));
-
-                    return Arrays.asList(ollir.toString(), variable, name);
-                } else {
-                    Objects.requireNonNullElse(superiorOllir, ollir).append(String.format("%s :=%s %s;\n",
-                            OllirTemplates.variable(variable),
-                            OllirTemplates.type(variable.getType()),
-                            OllirTemplates.getfield(field.getKey())));
-
-                    ollir.append(OllirTemplates.variable(variable));
-                    return Arrays.asList(ollir.toString(), variable, name);
-                }
-            } else {
-                if (data.get(0).equals("CONDITION")) {
-                    return Arrays.asList(String.format("%s ==.bool 1.bool", OllirTemplates.variable(field.getKey(), name)), field.getKey(), name);
-                }
+        Symbol variable = annotations.getVariable(node);
 
-                return Arrays.asList(OllirTemplates.variable(field.getKey(), name), field.getKey(), name);
-            }
+        if (variable == null) {
+            // "this" or the name of a class
+            return new OllirReference(node.get("name"), annotations.getType(node));
         }
-        return Arrays.asList("ACCESS", node.get("name"));
-    }
-
-    private List<Object> dealWithReturn(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        StringBuilder ollir = new StringBuilder();
 
-        List<Object> visit = visit(node.getChildren().get(0), Arrays.asList("RETURN"));
-
-        String result = (String) visit.get(0);
-        String[] parts = result.split("\n");
-        if (parts.length > 1) {
-            for (int i = 0; i < parts.length - 1; i++) {
-                ollir.append(parts[i]).append("\n");
-            }
-            ollir.append(OllirTemplates.ret(currentMethod.getReturnType(), parts[parts.length - 1]));
-        } else {
-            ollir.append(OllirTemplates.ret(currentMethod.getReturnType(), result));
+        if (annotations.isClassField(node)) {
+            return getField(variable);
         }
 
-        return Collections.singletonList(ollir.toString());
+        return local(variable);
     }
 
-    private List<Object> dealWithAndExpression(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        JmmNode left = node.getChildren().get(0);
-        JmmNode right = node.getChildren().get(1);
-
-        String leftReturn = (String) visit(left, Collections.singletonList("BINARY")).get(0);
-        String rightReturn = (String) visit(right, Collections.singletonList("BINARY")).get(0);
+    private OllirNode dealWithReturn(JmmNode node, List<Object> data) {
+        OllirNode value = visit(node.getChild(0), expression(currentMethod.getReturnType()));
+        addInstruction(new OllirReturn(currentMethod.getReturnType(), toElement(value)));
 
-        String[] leftStmts = leftReturn.split("\n");
-        String[] rightStmts = rightReturn.split("\n");
-
-        StringBuilder ollir = new StringBuilder();
-
-        String leftSide;
-        String rightSide;
+        return null;
+    }
 
-        leftSide = binaryOperations(leftStmts, ollir, new Type("boolean", false));
-        rightSide = binaryOperations(rightStmts, ollir, new Type("boolean", false));
+    /**
+     * Evaluates a && b && c as Java does, from the left and only while the operands are true: the value is kept in a
+     * temporary that jumps to the end as soon as it is false.
+     */
+    private OllirNode dealWithAndExpression(JmmNode node, List<Object> data) {
+        if (annotations.getConstant(node) != null) {
+            return constant(node);
+        }
 
+        List<JmmNode> operands = getAndOperands(node);
+        OllirOperand value = newTemporary(BOOLEAN);
+        assign(value, (OllirExpression) visit(operands.get(0), expression(BOOLEAN)));
 
-        if (data.get(0).equals("RETURN")) {
-            Symbol variable = new Symbol(new Type("boolean", false), "temporary" + temp_sequence++);
-            ollir.append(String.format("%s :=.bool %s %s.i32 %s;\n", OllirTemplates.variable(variable), leftSide, node.get("operation"), rightSide));
-            ollir.append(OllirTemplates.variable(variable));
-        } else {
-            ollir.append(String.format("%s %s.bool %s", leftSide, node.get("operation"), rightSide));
+        String end = "endand" + and_label_sequence++;
+        for (int i = 1; i < operands.size(); i++) {
+            addInstruction(new OllirBranch(not(value), end));
+            assign(value, (OllirExpression) visit(operands.get(i), expression(BOOLEAN)));
         }
+        addInstruction(new OllirLabel(end));
 
-        return Collections.singletonList(ollir.toString());
+        return value;
     }
 
-    private List<Object> dealWithNotExpression(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        StringBuilder ollir = new StringBuilder();
-        String expression = (String) visit(node.getChildren().get(0), Collections.singletonList("NOT")).get(0);
-        String[] parts = expression.split("\n");
-
-        String last = parts[parts.length - 1];
-
-        if (parts.length > 1) {
-            for (int i = 0; i < parts.length - 1; i++) {
-                ollir.append(parts[i]).append("\n");
-            }
+    private OllirNode dealWithNotExpression(JmmNode node, List<Object> data) {
+        if (annotations.getConstant(node) != null) {
+            return constant(node);
         }
 
-        Symbol variable = new Symbol(new Type("boolean", false), "temporary" + temp_sequence++);
+        OllirNode expression = visit(node.getChild(0), expression(BOOLEAN));
 
-        String[] expressionParts;
-        if ((expressionParts = last.split("<")).length == 2) {
-            if (data.get(0).equals("RETURN")) {
-                ollir.append(String.format("%s :=.bool %s>=%s;\n", OllirTemplates.variable(variable), expressionParts[0], expressionParts[1]));
-                ollir.append(String.format("%s", OllirTemplates.variable(variable)));
-            } else {
-                ollir.append(String.format("%s>=%s", expressionParts[0], expressionParts[1]));
-            }
-        } else if ((expressionParts = last.split(">=")).length == 2) {
-            if (data.get(0).equals("RETURN")) {
-                ollir.append(String.format("%s :=.bool %s<%s;\n", OllirTemplates.variable(variable), expressionParts[0], expressionParts[1]));
-                ollir.append(String.format("%s", OllirTemplates.variable(variable)));
-            } else {
-                ollir.append(String.format("%s<%s", expressionParts[0], expressionParts[1]));
-            }
-        } else if (expression.equals("0.bool")) {
-            ollir.append("1.bool");
-        } else if (expression.equals("1.bool")) {
-            ollir.append("0.bool");
-        } else {
-            if (data.get(0).equals("RETURN")) {
-                Symbol variable1 = new Symbol(new Type("boolean", false), "temporary" + temp_sequence++);
+        // !(a < b) is a >= b and the other way around
+        if (isComparison(expression)) {
+            return negate((OllirBinaryOperation) expression);
+        }
 
-                ollir.append(String.format("%s :=.bool %s;\n", OllirTemplates.variable(variable1), last));
-                ollir.append(String.format("%s :=.bool %s !.bool %s;\n", OllirTemplates.variable(variable), OllirTemplates.variable(variable1), OllirTemplates.variable(variable1)));
-                ollir.append(String.format("%s", OllirTemplates.variable(variable)));
-            } else {
-                ollir.append(String.format("%s :=.bool %s;\n", OllirTemplates.variable(variable), last));
-                ollir.append(String.format("%s !.bool %s",
-                        OllirTemplates.variable(variable),
-                        OllirTemplates.variable(variable)));
-            }
+        if (expression instanceof OllirLiteral) {
+            return new OllirLiteral(((OllirLiteral) expression).getValue().equals("0") ? "1" : "0", BOOLEAN);
         }
 
-        return Collections.singletonList(ollir.toString());
+        return not(toElement(expression));
     }
 
-    private List<Object> dealWithIfStatement(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        StringBuilder ollir = new StringBuilder();
+    private OllirNode dealWithIfElse(JmmNode node, List<Object> data) {
+        JmmNode ifStatement = node.getChild(0);
+        JmmNode elseStatement = node.getChild(1);
 
         int count = if_label_sequence++;
 
-        String ifCondition = (String) visit(node.getChildren().get(0), Collections.singletonList("CONDITION")).get(0);
-
-        String[] ifConditionParts = ifCondition.split("\n");
-        if (ifConditionParts.length > 1) {
-            for (int i = 0; i < ifConditionParts.length - 1; i++) {
-                ollir.append(ifConditionParts[i]).append("\n");
+        String constant = annotations.getConstant(ifStatement.getChild(0));
+        if (constant != null) {
+            if (constant.equals("true")) {
+                for (int i = 1; i < ifStatement.getNumChildren(); i++) {
+                    dealWithStatement(ifStatement.getChild(i));
+                }
+            } else {
+                elseStatement.forEachChild(this::dealWithStatement);
             }
+            return null;
         }
 
-        if (ifConditionParts[ifConditionParts.length - 1].contains("==.bool 1.bool")) {
-            String condition = ifConditionParts[ifConditionParts.length - 1].split(" ==.bool ")[0];
-            ollir.append(String.format("if (%s !.bool %s) goto else%d;\n", condition, condition, count));
-        } else {
-            Symbol aux = new Symbol(new Type("boolean", false), "temporary" + temp_sequence++);
-            ollir.append(String.format("%s :=.bool %s;\n", OllirTemplates.variable(aux), ifConditionParts[ifConditionParts.length - 1]));
-            ollir.append(String.format("if (%s !.bool %s) goto else%d;\n", OllirTemplates.variable(aux), OllirTemplates.variable(aux), count));
-        }
+        branchIfFalse(ifStatement.getChild(0), "else" + count);
 
-        List<String> ifBody = new ArrayList<>();
-        for (int i = 1; i < node.getChildren().size(); i++) {
-            ifBody.add((String) visit(node.getChildren().get(i), Collections.singletonList("IF")).get(0));
+        for (int i = 1; i < ifStatement.getNumChildren(); i++) {
+            dealWithStatement(ifStatement.getChild(i));
         }
-        ollir.append(String.join("\n", ifBody)).append("\n");
-        ollir.append(String.format("goto endif%d;\n", count));
+        addInstruction(new OllirGoto("endif" + count));
 
-        ollir.append(visit(node.getParent().getChildren().get(1), Arrays.asList("ELSE", count)).get(0));
-        ollir.append("\n");
+        addInstruction(new OllirLabel("else" + count));
+        elseStatement.forEachChild(this::dealWithStatement);
 
-        ollir.append(String.format("endif%d:\n", count));
+        addInstruction(new OllirLabel("endif" + count));
 
-        return Collections.singletonList(ollir.toString());
+        return null;
     }
 
-    private List<Object> dealWithElseStatement(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
+    private OllirNode dealWithWhile(JmmNode node, List<Object> data) {
+        int count = while_label_sequence++;
 
-        StringBuilder ollir = new StringBuilder();
+        // A loop that never runs has no code, one that runs forever does not check its condition
+        String constant = annotations.getConstant(node.getChild(0));
+        if ("false".equals(constant)) {
+            return null;
+        }
 
-        ollir.append(String.format("else%d:\n", data.get(1)));
+        addInstruction(new OllirLabel("loop" + count));
 
-        List<String> elseBody = new ArrayList<>();
+        if (constant == null) {
+            branchIfFalse(node.getChild(0), "endloop" + count);
+        }
 
-        for (int i = 0; i < node.getChildren().size(); i++) {
-            elseBody.add((String) visit(node.getChildren().get(i), Collections.singletonList("ELSE")).get(0));
+        for (int i = 1; i < node.getNumChildren(); i++) {
+            dealWithStatement(node.getChild(i));
         }
 
-        ollir.append(String.join("\n", elseBody));
+        addInstruction(new OllirGoto("loop" + count));
+        addInstruction(new OllirLabel("endloop" + count));
 
-        return Collections.singletonList(ollir.toString());
+        return null;
     }
 
-    private List<Object> dealWithWhile(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        StringBuilder ollir = new StringBuilder();
-
-        int count = while_label_sequence++;
-
-        ollir.append(String.format("loop%d:\n", count));
+    private OllirNode dealWithCondition(JmmNode node, List<Object> data) {
+        return visit(node.getChild(0), data);
+    }
 
-        String condition = (String) visit(node.getChildren().get(0), Collections.singletonList("WHILE")).get(0);
-        String[] conditionParts = condition.split("\n");
-        if (conditionParts.length > 1) {
-            for (int i = 0; i < conditionParts.length - 1; i++) {
-                ollir.append(conditionParts[i]).append("\n");
+    /**
+     * Jumps to the label if the condition is false. A comparison jumps on the opposite comparison, instead of storing
+     * its value in a temporary and testing it, and a && b jumps if a is false and then if b is false, so b is only
+     * evaluated when a is true.
+     */
+    private void branchIfFalse(JmmNode condition, String label) {
+        if (condition.getKind().equals("IfCondition") || condition.getKind().equals("WhileCondition")) {
+            condition = condition.getChild(0);
+        }
+
+        String constant = condition.getKind().equals("BooleanLiteral") ? condition.get("value")
+                : annotations.getConstant(condition);
+        if (constant != null) {
+            if (constant.equals("false")) {
+                addInstruction(new OllirGoto(label));
             }
+            return;
         }
 
-        if (conditionParts[conditionParts.length - 1].contains("==.bool 1.bool")) {
-            String conditionAux = conditionParts[conditionParts.length - 1].split(" ==.bool ")[0];
-            ollir.append(String.format("if (%s !.bool %s) goto endloop%d;\n", conditionAux, conditionAux, count));
-        } else {
-            Symbol aux = new Symbol(new Type("boolean", false), "temporary" + temp_sequence++);
-            ollir.append(String.format("%s :=.bool %s;\n", OllirTemplates.variable(aux), conditionParts[conditionParts.length - 1]));
-            ollir.append(String.format("if (%s !.bool %s) goto endloop%d;\n", OllirTemplates.variable(aux), OllirTemplates.variable(aux), count));
-        }
-
-        List<String> body = new ArrayList<>();
-        for (int i = 1; i < node.getChildren().size(); i++) {
-            body.add((String) visit(node.getChildren().get(i), Arrays.asList("IF")).get(0));
+        if (condition.getKind().equals("AndExpression")) {
+            for (JmmNode operand : getAndOperands(condition)) {
+                branchIfFalse(operand, label);
+            }
+            return;
         }
-        ollir.append(String.join("\n", body)).append("\n");
-
-        ollir.append(String.format("goto loop%d;\n", count));
 
-        ollir.append(String.format("endloop%d:", count));
+        OllirNode value = visit(condition, expression(BOOLEAN));
 
-        return Collections.singletonList(ollir.toString());
+        if (isComparison(value)) {
+            addInstruction(new OllirBranch(negate((OllirBinaryOperation) value), label));
+        } else {
+            addInstruction(new OllirBranch(not(toElement(value)), label));
+        }
     }
 
-    private List<Object> dealWithCondition(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
+    private OllirNode dealWithAccessExpression(JmmNode node, List<Object> data) {
+        JmmNode target = node.getChild(0);
+        JmmNode member = node.getChild(1);
 
-        return visit(node.getChildren().get(0), Collections.singletonList("CONDITION"));
+        switch (member.getKind()) {
+            case "ArrayAccess": {
+                OllirOperand array = (OllirOperand) toElement(visit(target, expression(INT_ARRAY)));
+                OllirElement index = toOperand(visit(member.getChild(0), expression(INT)));
+                return new OllirArrayOperand(array, index);
+            }
+            case "Length": {
+                OllirElement array = toElement(visit(target, expression(INT_ARRAY)));
+                return new OllirCall(CallType.arraylength, array, null, Collections.emptyList(), INT);
+            }
+            case "MethodCall":
+                return dealWithMethodCall(target, member, expectedType(data));
+            default:
+                return null;
+        }
     }
 
-    private List<Object> dealWithAccessExpression(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        JmmNode target = node.getChildren().get(0);
-        JmmNode method = node.getChildren().get(1);
-
-        StringBuilder ollir = new StringBuilder();
+    private OllirCall dealWithMethodCall(JmmNode target, JmmNode call, Type expectedType) {
+        OllirElement targetValue = toElement(visit(target, expression(null)));
 
-        List<Object> targetReturn = visit(target, Arrays.asList("ACCESS", ollir));
-        List<Object> methodReturn = visit(method, Arrays.asList("ACCESS", ollir));
+        List<OllirElement> arguments = new ArrayList<>();
+        List<Type> argumentTypes = new ArrayList<>();
+        for (int i = 0; i < call.getNumChildren(); i++) {
+            OllirElement value = toElement(visit(call.getChild(i), expression(null)));
+            arguments.add(value);
+            argumentTypes.add(value.getType());
+        }
 
-        Symbol assignment = (data.get(0).equals("ASSIGNMENT")) ? (Symbol) data.get(1) : null;
+        String methodName = call.get("value");
 
-        String ollirExpression = null;
-        Type expectedType = (data.get(0).equals("BINARY") || (data.size() > 2 && data.get(2).equals("ARRAY_ACCESS"))) ? new Type("int", false) : null;
+        // Static call on an imported class
+        if (targetValue instanceof OllirReference && !((OllirReference) targetValue).isThis()) {
+            return new OllirCall(CallType.invokestatic, targetValue, methodName, arguments, expectedType);
+        }
 
-        // static methods and this calls
-        if (targetReturn.get(0).equals("ACCESS")) {
-            // Static Imported Methods
-            if (!targetReturn.get(1).equals("this")) {
-                String targetVariable = (String) targetReturn.get(1);
-                if (assignment != null) {
-                    if (data.get(2).equals("ARRAY_ACCESS")) {
-                        ollirExpression = OllirTemplates.invokestatic(targetVariable, (String) methodReturn.get(1), new Type(assignment.getType().getName(), false), (String) methodReturn.get(2));
-                        expectedType = new Type(assignment.getType().getName(), false);
-                    } else {
-                        ollirExpression = OllirTemplates.invokestatic(targetVariable, (String) methodReturn.get(1), assignment.getType(), (String) methodReturn.get(2));
-                        expectedType = assignment.getType();
-                    }
-                } else {
-                    expectedType = (expectedType == null) ? new Type("void", false) : expectedType;
-                    ollirExpression = OllirTemplates.invokestatic(targetVariable, (String) methodReturn.get(1), expectedType, (String) methodReturn.get(2));
-                }
-            } else {
-                // imported method called on "this"
-                if (methodReturn.get(0).equals("method")) {
-                    if (assignment != null) {
-                        ollirExpression = OllirTemplates.invokespecial((String) methodReturn.get(1), assignment.getType(), (String) methodReturn.get(2));
-                        expectedType = assignment.getType();
-                    } else {
-                        expectedType = (expectedType == null) ? new Type("void", false) : expectedType;
-                        ollirExpression = OllirTemplates.invokespecial((String) methodReturn.get(1), expectedType, (String) methodReturn.get(2));
-                    }
-                } else {
-                    // Declared method called on "this"
-                    JmmMethod called = (JmmMethod) methodReturn.get(1);
-                    ollirExpression = OllirTemplates.invokevirtual(called.getName(), called.getReturnType(), (String) methodReturn.get(2));
-                    expectedType = called.getReturnType();
-                }
+        // Method declared in this class, as resolved by the analysis unless an argument is a call to another class
+        if (targetValue.getType().getName().equals(table.getClassName())) {
+            JmmMethod method = annotations.getMethod(call);
+            if (method == null) {
+                method = table.getMethod(new MethodSignature(methodName, argumentTypes));
             }
-        } else if (method.getKind().equals("ArrayAccess")) {
-            // ARRAY ACCESS
-            Symbol array = (Symbol) targetReturn.get(1);
-            String index = (String) methodReturn.get(0);
-
-            String[] parts = index.split("\n");
-            if (parts.length > 1) {
-                for (int i = 0; i < parts.length - 1; i++) {
-                    ollir.append(parts[i]).append("\n");
-                }
-            }
-
-            ollirExpression = OllirTemplates.arrayaccess(array, (String) targetReturn.get(2), parts[parts.length - 1]);
-            expectedType = new Type(array.getType().getName(), false);
-        } else {
-            if (targetReturn.get(1).equals("OBJECT_INIT")) {
-                Type type = new Type((String) targetReturn.get(2), false);
-                Symbol auxiliary = new Symbol(type, "temporary" + temp_sequence++);
-                ollir.append(String.format("%s :=%s %s;\n", OllirTemplates.variable(auxiliary), OllirTemplates.type(type), targetReturn.get(0)));
-                ollir.append(OllirTemplates.objectinstance(auxiliary)).append("\n");
-
-                if (methodReturn.get(0).equals("method")) {
-                    if (assignment != null) {
-                        ollirExpression = OllirTemplates.invokespecial(
-                                OllirTemplates.variable(auxiliary),
-                                (String) methodReturn.get(1),
-                                assignment.getType(),
-                                (String) methodReturn.get(2)
-                        );
-                        expectedType = assignment.getType();
-                    } else {
-                        expectedType = (expectedType == null) ? new Type("void", false) : expectedType;
-                        ollirExpression = OllirTemplates.invokespecial(
-                                OllirTemplates.variable(auxiliary),
-                                (String) methodReturn.get(1),
-                                expectedType,
-                                (String) methodReturn.get(2)
-                        );
-                    }
-                } else {
-                    // Declared method called on "this"
-                    JmmMethod called = (JmmMethod) methodReturn.get(1);
-                    ollirExpression = OllirTemplates.invokevirtual(OllirTemplates.variable(auxiliary), called.getName(), called.getReturnType(), (String) methodReturn.get(2));
-                    expectedType = called.getReturnType();
-                }
-            } else {
-                if (methodReturn.get(0).equals("method")) {
-                    System.out.println(targetReturn);
-                    if (assignment != null) {
-                        ollirExpression = OllirTemplates.invokespecial(OllirTemplates.variable((Symbol) targetReturn.get(1)), (String) methodReturn.get(1), assignment.getType(), (String) methodReturn.get(2));
-                        expectedType = assignment.getType();
-                    } else {
-                        expectedType = (expectedType == null) ? new Type("void", false) : expectedType;
-                        ollirExpression = OllirTemplates.invokespecial(OllirTemplates.variable((Symbol) targetReturn.get(1)), (String) methodReturn.get(1), expectedType, (String) methodReturn.get(2));
-                    }
-                } else if (!methodReturn.get(0).equals("length")){
-                    Symbol targetVariable = (Symbol) targetReturn.get(1);
-
-                    JmmMethod called = (JmmMethod) methodReturn.get(1);
-                    ollirExpression = OllirTemplates.invokevirtual(OllirTemplates.variable(targetVariable), called.getName(), called.getReturnType(), (String) methodReturn.get(2));
-                    expectedType = called.getReturnType();
-                } else {
-                    ollirExpression = OllirTemplates.arraylength(OllirTemplates.variable((Symbol) targetReturn.get(1), (String) targetReturn.get(2)));
-                    expectedType = new Type("int", false);
-                }
+            if (method != null) {
+                return new OllirCall(CallType.invokevirtual, targetValue, methodName, arguments, method.getReturnType());
             }
         }
 
-        if ((data.get(0).equals("CONDITION") || data.get(0).equals("BINARY") || data.get(0).equals("FIELD") || data.get(0).equals("PARAM") || data.get(0).equals("RETURN")) && expectedType != null && ollirExpression != null) {
-            Symbol auxiliary = new Symbol(expectedType, "temporary" + temp_sequence++);
-            ollir.append(String.format("%s :=%s %s;\n", OllirTemplates.variable(auxiliary), OllirTemplates.type(expectedType), ollirExpression));
-            if (data.get(0).equals("CONDITION")) {
-                ollir.append(String.format("%s ==.bool 1.bool", OllirTemplates.variable(auxiliary)));
-            } else if (data.get(0).equals("BINARY") || data.get(0).equals("FIELD") || data.get(0).equals("PARAM") || data.get(0).equals("RETURN")) {
-                ollir.append(String.format("%s", OllirTemplates.variable(auxiliary)));
-            }
-        } else {
-            ollir.append(ollirExpression);
-        }
+        return new OllirCall(CallType.invokevirtual, targetValue, methodName, arguments, expectedType);
+    }
 
-        if (data.get(0).equals("METHOD") || data.get(0).equals("IF") || data.get(0).equals("ELSE") || data.get(0).equals("WHILE")) {
-            ollir.append(";");
-        }
+    private OllirNode dealWithArrayInit(JmmNode node, List<Object> data) {
+        OllirElement size = toElement(visit(node.getChild(0), expression(INT)));
 
-        return Arrays.asList(ollir.toString(), expectedType);
+        return new OllirCall(CallType.NEW, null, null, Collections.singletonList(size), INT_ARRAY);
     }
 
-    private List<Object> dealWithMethodCall(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        if (node.getKind().equals("Length")) {
-            return Arrays.asList("length");
-        }
+    private OllirNode dealWithNewObject(JmmNode node, List<Object> data) {
+        Type type = Types.of(node.get("value"), false);
 
-        StringBuilder ollir = (StringBuilder) data.get(1);
+        return new OllirCall(CallType.NEW, new OllirReference(node.get("value"), type), null, Collections.emptyList(), type);
+    }
 
-        List<JmmNode> children = node.getChildren();
-        Map.Entry<List<Type>, String> params = getParametersList(children, ollir);
+    private static OllirNode reduce(OllirNode nodeResult, List<OllirNode> childrenResults) {
+        if (nodeResult != null) {
+            return nodeResult;
+        }
 
-        String methodString = node.get("value");
-        if (params.getKey().size() > 0) {
-            for (Type param : params.getKey()) {
-                methodString += "::" + param.getName() + ":" + (param.isArray() ? "true" : "false");
+        for (OllirNode childResult : childrenResults) {
+            if (childResult != null) {
+                return childResult;
             }
         }
 
-        Type returnType = table.getReturnType(methodString);
+        return null;
+    }
 
-        try {
-            JmmMethod method = table.getMethod(node.get("value"), params.getKey(), returnType);
-            return Arrays.asList("class_method", method, params.getValue());
-        } catch (Exception e) {
-            return Arrays.asList("method", node.get("value"), params.getValue());
-        }
-    }
-
-    private Map.Entry<List<Type>, String> getParametersList(List<JmmNode> children, StringBuilder ollir) {
-        List<Type> params = new ArrayList<>();
-
-        List<String> paramsOllir = new ArrayList<>();
-
-        for (JmmNode child : children) {
-            Type type;
-            String var;
-            String[] statements;
-            String result;
-            switch (child.getKind()) {
-                case "IntegerLiteral":
-                    type = new Type("int", false);
-                    paramsOllir.add(String.format("%s%s", child.get("value"), OllirTemplates.type(type)));
-                    params.add(type);
-                    break;
-                case "BooleanLiteral":
-                    type = new Type("boolean", false);
-                    paramsOllir.add(String.format("%s%s", child.get("value"), OllirTemplates.type(type)));
-                    params.add(type);
-                    break;
-                case "Variable":
-                    List<Object> variable = visit(child, Arrays.asList("PARAM"));
-
-                    statements = ((String) variable.get(0)).split("\n");
-                    if (statements.length > 1) {
-                        for (int i = 0; i < statements.length - 1; i++) {
-                            ollir.append(statements[i]).append("\n");
-                        }
-                    }
-
-                    params.add(((Symbol) variable.get(1)).getType());
-                    paramsOllir.add(statements[statements.length - 1]);
-                    break;
-                case "AccessExpression":
-                    List<Object> accessExpression = visit(child, Arrays.asList("PARAM"));
-                    statements = ((String) accessExpression.get(0)).split("\n");
-                    if (statements.length > 1) {
-                        for (int i = 0; i < statements.length - 1; i++) {
-                            ollir.append(statements[i]).append("\n");
-                        }
-                    }
-                    ollir.append(String.format("%s%s :=%s %s;\n",
-                            "temporary" + temp_sequence,
-                            OllirTemplates.type((Type) accessExpression.get(1)),
-                            OllirTemplates.type((Type) accessExpression.get(1)),
-                            statements[statements.length - 1]));
-
-                    paramsOllir.add("temporary" + temp_sequence++ + OllirTemplates.type((Type) accessExpression.get(1)));
-
-                    params.add((Type) accessExpression.get(1));
-                    break;
-                case "RelationalExpression":
-                case "AndExpression":
-                    var = (String) visit(child, Arrays.asList("PARAM")).get(0);
-                    statements = var.split("\n");
-                    result = binaryOperations(statements, ollir, new Type("boolean", false));
-                    params.add(new Type("boolean", false));
-
-                    paramsOllir.add(result);
-                    break;
-                case "BinaryOperation":
-                    var = (String) visit(child, Arrays.asList("PARAM")).get(0);
-                    statements = var.split("\n");
-                    result = binaryOperations(statements, ollir, new Type("int", false));
-                    params.add(new Type("int", false));
-
-                    paramsOllir.add(result);
-                    break;
-                default:
-                    break;
+    /**
+     * @return the position in the chain of the outermost operation with a value known at compile time, or the size of
+     * the chain if there is none
+     */
+    private int getFoldedOperation(List<JmmNode> chain) {
+        for (int i = 0; i < chain.size(); i++) {
+            if (annotations.getConstant(chain.get(i)) != null) {
+                return i;
             }
         }
-        return Map.entry(params, String.join(", ", paramsOllir));
+        return chain.size();
     }
 
-    private List<Object> dealWithArrayInit(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
-
-        StringBuilder ollir = new StringBuilder();
+    /**
+     * @return the operands of a && b && c from the left, without the ones at the start that the optimizations folded,
+     * which are true, as the whole expression would be false otherwise
+     */
+    private List<JmmNode> getAndOperands(JmmNode node) {
+        List<JmmNode> chain = getLeftChain(node);
+        int folded = getFoldedOperation(chain);
 
-        String size = (String) visit(node.getChildren().get(0), Collections.singletonList("RETURN")).get(0);
-
-        String[] sizeParts = size.split("\n");
-        if (sizeParts.length > 1) {
-            for (int i = 0; i < sizeParts.length - 1; i++) {
-                ollir.append(sizeParts[i]).append("\n");
-            }
+        List<JmmNode> operands = new ArrayList<>();
+        if (folded == chain.size()) {
+            operands.add(chain.get(chain.size() - 1).getChild(0));
         }
+        for (int i = folded - 1; i >= 0; i--) {
+            operands.add(chain.get(i).getChild(1));
+        }
+        return operands;
+    }
 
-        ollir.append(OllirTemplates.arrayinit(sizeParts[sizeParts.length - 1]));
-
-        return Arrays.asList(ollir.toString(), "ARRAY_INIT");
+    /**
+     * @return the literal with the value the optimizations found for the expression
+     */
+    private OllirLiteral constant(JmmNode expression) {
+        String value = annotations.getConstant(expression);
+        switch (value) {
+            case "true":
+                return new OllirLiteral("1", BOOLEAN);
+            case "false":
+                return new OllirLiteral("0", BOOLEAN);
+            default:
+                return new OllirLiteral(value, INT);
+        }
     }
 
-    private List<Object> dealWithNewObject(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
+    private static List<Object> expression(Type expectedType) {
+        return Arrays.asList("EXPRESSION", expectedType);
+    }
 
-        String toReturn = OllirTemplates.objectinit(node.get("value"));
-        if (data.get(0).equals("METHOD")) {
-            toReturn += ";";
+    /**
+     * @return the type expected for the value of an expression, used for calls to methods not declared in this class
+     */
+    private static Type expectedType(List<Object> data) {
+        if (!data.get(0).equals("EXPRESSION")) {
+            return VOID;
         }
 
-        return Arrays.asList(toReturn, "OBJECT_INIT", node.get("value"));
+        return data.get(1) != null ? (Type) data.get(1) : INT;
     }
 
-    private List<Object> dealWithArrayAccess(JmmNode node, List<Object> data) {
-        if (visited.contains(node)) return Collections.singletonList("DEFAULT_VISIT");
-        visited.add(node);
+    private void addInstruction(OllirInstruction instruction) {
+        currentOllirMethod.addInstruction(instruction);
+    }
 
-        String visit = (String) visit(node.getChildren().get(0), Arrays.asList("RETURN")).get(0);
+    private OllirOperand local(Symbol variable) {
+        return new OllirOperand(OllirTemplates.name(variable), currentMethod.isParameter(variable), variable.getType());
+    }
 
-        return Arrays.asList(visit);
+    private OllirOperand field(Symbol variable) {
+        return new OllirOperand(variable.getName(), variable.getType());
     }
 
-    private List<Object> defaultVisit(JmmNode node, List<Object> data) {
-        return Collections.singletonList("DEFAULT_VISIT");
+    private OllirGetField getField(Symbol variable) {
+        return new OllirGetField(field(variable));
     }
 
-    private static List<Object> reduce(List<Object> nodeResult, List<List<Object>> childrenResults) {
-        var content = new StringBuilder();
+    private OllirOperand newTemporary(Type type) {
+        return new OllirOperand("temporary" + temp_sequence++, type);
+    }
 
-        if (!nodeResult.get(0).equals("DEFAULT_VISIT"))
-            content.append(nodeResult.get(0));
+    private static OllirBinaryOperation not(OllirElement element) {
+        return new OllirBinaryOperation(element, "!", BOOLEAN, element, BOOLEAN);
+    }
 
-        for (var childResult : childrenResults) {
-            if (!childResult.get(0).equals("DEFAULT_VISIT"))
-                content.append(String.join("\n", StringLines.getLines((String) childResult.get(0))));
+    private static boolean isComparison(OllirNode value) {
+        if (!(value instanceof OllirBinaryOperation)) {
+            return false;
         }
 
-        if (nodeResult.size() > 1) {
-            List<Object> result = new ArrayList<>();
-            result.add(nodeResult.get(0));
-            result.addAll(nodeResult.subList(1, nodeResult.size()));
+        String operator = ((OllirBinaryOperation) value).getOperator();
+        return operator.equals("<") || operator.equals(">=");
+    }
 
-            return result;
-        } else {
-            return Arrays.asList(content.toString());
-        }
+    /**
+     * @return the opposite comparison, a >= b for a < b and a < b for a >= b
+     */
+    private static OllirBinaryOperation negate(OllirBinaryOperation comparison) {
+        return new OllirBinaryOperation(
+                comparison.getLeft(),
+                comparison.getOperator().equals("<") ? ">=" : "<",
+                comparison.getOperandType(),
+                comparison.getRight(),
+                BOOLEAN);
+    }
 
+    /**
+     * Assigns a value to a variable. Objects are initialized right after being created.
+     */
+    private void assign(OllirOperand variable, OllirExpression value) {
+        addInstruction(new OllirAssign(variable, value));
 
+        if (value instanceof OllirCall && ((OllirCall) value).isObjectCreation()) {
+            addInstruction(new OllirCallInstruction(
+                    new OllirCall(CallType.invokespecial, variable, "<init>", Collections.emptyList(), VOID)));
+        }
     }
 
-    private String binaryOperations(String[] statements, StringBuilder ollir, Type type) {
-        String finalStmt;
-        if (statements.length > 1) {
-            for (int i = 0; i < statements.length - 1; i++) {
-                ollir.append(statements[i]).append("\n");
-            }
-            String last = statements[statements.length - 1];
-            if (last.split("(/|\\+|-|\\*|&&|<|!|>=)(\\.i32|\\.bool)").length == 2) {
-                Pattern p = Pattern.compile("(/|\\+|-|\\*|&&|<|!|>=)(\\.i32|\\.bool)");
-                Matcher m = p.matcher(last);
-
-                m.find();
+    /**
+     * @return the value as a single element, stored in a new temporary if it is not a literal or a variable
+     */
+    private OllirElement toElement(OllirNode value) {
+        if (value instanceof OllirElement && !(value instanceof OllirArrayOperand)) {
+            return (OllirElement) value;
+        }
 
-                ollir.append(String.format("%s :=%s %s;\n", OllirTemplates.variable(new Symbol(type, String.format("temporary%d", temp_sequence))), OllirTemplates.assignmentType(m.group(1)), last));
-                finalStmt = OllirTemplates.variable(new Symbol(type, String.format("temporary%d", temp_sequence++)));
-            } else {
-                finalStmt = last;
-            }
-        } else {
-            if (statements[0].split("(/|\\+|-|\\*|&&|<|!|>=)(\\.i32|\\.bool)").length == 2) {
-                Pattern p = Pattern.compile("(/|\\+|-|\\*|&&|<|!|>=)(\\.i32|\\.bool)");
-                Matcher m = p.matcher(statements[0]);
-                m.find();
+        OllirExpression expression = (OllirExpression) value;
+        OllirOperand temporary = newTemporary(expression.getType());
+        assign(temporary, expression);
+        return temporary;
+    }
 
-                ollir.append(String.format("%s :=%s %s;\n", OllirTemplates.variable(new Symbol(type, String.format("temporary%d", temp_sequence))), OllirTemplates.assignmentType(m.group(1)), statements[0]));
-                finalStmt = OllirTemplates.variable(new Symbol(type, String.format("temporary%d", temp_sequence++)));
-            } else {
-                finalStmt = statements[0];
-            }
+    /**
+     * @return the value as a variable, used for array indexes
+     */
+    private OllirElement toOperand(OllirNode value) {
+        OllirElement element = toElement(value);
+        if (element instanceof OllirOperand) {
+            return element;
         }
-        return finalStmt;
+
+        OllirOperand temporary = newTemporary(element.getType());
+        assign(temporary, element);
+        return temporary;
     }
 }
@@ -0,0 +1,188 @@
+package ast;
+
+import pt.up.fe.comp.jmm.JmmNode;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.analysis.table.Types;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Analyses the methods of a class in parallel, once its symbol table is filled, with the same reports, in the same
+ * order, as one {@link JmmExpressionAnalyser} visiting the whole class.
+ * <p>
+ * Methods only depend on each other through the class fields they initialize, as a field assigned in a method is
+ * initialized for the methods after it. Each method is analysed with the fields assigned by the methods before it. If a
+ * method does not initialize all the fields it assigns (e.g. an assignment with mismatched types), the results are
+ * dropped and the class is analysed again in one thread.
+ */
+public class ParallelMethodAnalysis {
+    private final JmmSymbolTable table;
+    private final ForkJoinPool pool;
+
+    public ParallelMethodAnalysis(JmmSymbolTable table, ForkJoinPool pool) {
+        this.table = table;
+        this.pool = pool;
+    }
+
+    /**
+     * Analyses the tree, adding the reports of each method in the order of the methods
+     */
+    public void analyse(JmmNode root, List<Report> reports) {
+        List<JmmNode> methodNodes = getMethodNodes(root);
+        List<JmmMethod> methods = new ArrayList<>();
+        Set<JmmMethod> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (JmmNode methodNode : methodNodes) {
+            JmmMethod method = getMethod(methodNode);
+            methods.add(method);
+            distinct.add(method);
+        }
+
+        // Methods that share their entry in the symbol table share their variables, so they are analysed in order
+        if (methods.size() < 2 || methods.contains(null) || distinct.size() < methods.size()) {
+            analyseSequentially(root, reports);
+            return;
+        }
+
+        // The fields initialized before each method, and after the last one
+        List<Set<Symbol>> initializedFields = new ArrayList<>();
+        Set<Symbol> initialized = new HashSet<>();
+        initializedFields.add(initialized);
+        for (int i = 0; i < methodNodes.size(); i++) {
+            initialized = new HashSet<>(initialized);
+            initialized.addAll(getAssignedFields(methodNodes.get(i), methods.get(i)));
+            initializedFields.add(initialized);
+        }
+
+        List<ForkJoinTask<MethodResult>> tasks = new ArrayList<>();
+        for (int i = 0; i < methodNodes.size(); i++) {
+            JmmNode methodNode = methodNodes.get(i);
+            Set<Symbol> initializedBefore = initializedFields.get(i);
+            tasks.add(pool.submit(() -> analyseMethod(methodNode, initializedBefore)));
+        }
+
+        List<MethodResult> results = new ArrayList<>();
+        boolean expectedFields = true;
+        for (int i = 0; i < tasks.size(); i++) {
+            MethodResult result = tasks.get(i).join();
+            results.add(result);
+            expectedFields &= result.analyser.getInitializedFields().equals(initializedFields.get(i + 1));
+        }
+
+        if (!expectedFields) {
+            analyseSequentially(root, reports);
+            return;
+        }
+
+        for (MethodResult result : results) {
+            reports.addAll(result.reports);
+            table.getAnnotations().putAll(result.annotations);
+            result.analyser.saveInitializedVariables();
+        }
+    }
+
+    private void analyseSequentially(JmmNode root, List<Report> reports) {
+        JmmExpressionAnalyser analyser = new JmmExpressionAnalyser(table, reports);
+        analyser.visit(root, null);
+        analyser.saveInitializedVariables();
+    }
+
+    private MethodResult analyseMethod(JmmNode methodNode, Set<Symbol> initializedFields) {
+        List<Report> reports = new ArrayList<>();
+        NodeAnnotations annotations = new NodeAnnotations();
+        JmmExpressionAnalyser analyser = new JmmExpressionAnalyser(table, reports, annotations, initializedFields);
+        analyser.visit(methodNode, null);
+
+        return new MethodResult(analyser, reports, annotations);
+    }
+
+    /**
+     * @return the ClassMethod and MainMethod nodes of the class, in the order they are declared
+     */
+    private static List<JmmNode> getMethodNodes(JmmNode root) {
+        List<JmmNode> methodNodes = new ArrayList<>();
+        for (int i = 0; i < root.getNumChildren(); i++) {
+            JmmNode classNode = root.getChild(i);
+            if (!classNode.getKind().equals("ClassDeclaration")) {
+                continue;
+            }
+
+            for (int j = 0; j < classNode.getNumChildren(); j++) {
+                JmmNode child = classNode.getChild(j);
+                if (child.getKind().equals("ClassMethod") || child.getKind().equals("MainMethod")) {
+                    methodNodes.add(child);
+                }
+            }
+        }
+        return methodNodes;
+    }
+
+    /**
+     * @return the method of the symbol table the analysis uses for the node, or null if there is none
+     */
+    private JmmMethod getMethod(JmmNode methodNode) {
+        try {
+            if (methodNode.getKind().equals("MainMethod")) {
+                return table.getMethod("main", Collections.singletonList(Types.STRING_ARRAY), Types.VOID);
+            }
+
+            List<Type> params = JmmMethod.parseParameters(methodNode.get("params"));
+            return table.getMethod(methodNode.get("name"), params, JmmSymbolTable.getType(methodNode, "return"));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the class fields that the assignments of the method initialize, as the analysis would if they are valid
+     */
+    private Set<Symbol> getAssignedFields(JmmNode methodNode, JmmMethod method) {
+        Set<Symbol> fields = new HashSet<>();
+
+        Deque<JmmNode> nodes = new ArrayDeque<>();
+        nodes.push(methodNode);
+        while (!nodes.isEmpty()) {
+            JmmNode node = nodes.pop();
+            for (int i = 0; i < node.getNumChildren(); i++) {
+                nodes.push(node.getChild(i));
+            }
+
+            if (!node.getKind().equals("Assignment")) {
+                continue;
+            }
+
+            Map.Entry<Symbol, Boolean> variable = method.getField(node.get("variable"));
+            if (variable == null) {
+                variable = table.getField(node.get("variable"));
+            }
+
+            if (variable != null && !method.hasLocalVariable(variable.getKey()) && table.hasField(variable.getKey())) {
+                fields.add(variable.getKey());
+            }
+        }
+        return fields;
+    }
+
+    private static class MethodResult {
+        private final JmmExpressionAnalyser analyser;
+        private final List<Report> reports;
+        private final NodeAnnotations annotations;
+
+        private MethodResult(JmmExpressionAnalyser analyser, List<Report> reports, NodeAnnotations annotations) {
+            this.analyser = analyser;
+            this.reports = reports;
+            this.annotations = annotations;
+        }
+    }
+}
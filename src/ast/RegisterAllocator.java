@@ -0,0 +1,318 @@
+package ast;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives the local variables of a method the JVM registers that {@link JasminGenerator} loads and stores them from, so
+ * that variables that are never live at the same time (e.g. the temporaries of different statements) share one.
+ * <p>
+ * The liveness of each variable is computed on the CFG of the method, and the registers are the colours of the graph
+ * where variables live at the same time are connected. "this" and the parameters keep their registers, as the JVM
+ * passes them there.
+ */
+public class RegisterAllocator {
+    private final Method method;
+
+    /** The local variables that are loaded or stored, by name, and their names by index */
+    private final Map<String, Integer> variables = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * @param method    a method whose CFG and table of variables were built
+     */
+    public RegisterAllocator(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * Sets the register of each local variable of the method in its table of variables
+     * @return the number of registers the method uses, including "this" and the parameters
+     */
+    public int allocate() {
+        HashMap<String, Descriptor> varTable = method.getVarTable();
+        int firstFree = method.isStaticMethod() ? 0 : 1;
+        for (Descriptor descriptor : varTable.values()) {
+            if (descriptor.getScope() == VarScope.PARAMETER) {
+                firstFree = Math.max(firstFree, descriptor.getVirtualReg() + 1);
+            }
+        }
+
+        List<Instruction> instructions = method.getInstructions();
+        List<BitSet> defs = new ArrayList<>();
+        List<BitSet> uses = new ArrayList<>();
+        for (Instruction instruction : instructions) {
+            BitSet def = new BitSet();
+            BitSet use = new BitSet();
+            addDefsAndUses(instruction, def, use);
+            defs.add(def);
+            uses.add(use);
+        }
+
+        List<BitSet> liveIn = new ArrayList<>();
+        List<BitSet> liveOut = new ArrayList<>();
+        computeLiveness(instructions, defs, uses, liveIn, liveOut);
+        List<BitSet> interference = getInterference(defs, liveIn, liveOut);
+        int[] colours = colour(interference);
+
+        int registers = firstFree;
+        for (int variable = 0; variable < colours.length; variable++) {
+            int register = firstFree + colours[variable];
+            varTable.get(names.get(variable)).setVirtualReg(register);
+            registers = Math.max(registers, register + 1);
+        }
+        return registers;
+    }
+
+    /**
+     * Fills the variables live before and after each instruction, going through the instructions backwards until
+     * nothing changes
+     */
+    private static void computeLiveness(List<Instruction> instructions, List<BitSet> defs, List<BitSet> uses,
+                                        List<BitSet> liveIn, List<BitSet> liveOut) {
+        Map<Node, Integer> positions = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            positions.put(instructions.get(i), i);
+            liveIn.add(new BitSet());
+            liveOut.add(new BitSet());
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                BitSet out = new BitSet();
+                for (Node successor : getSuccessors(instructions.get(i))) {
+                    Integer position = positions.get(successor);
+                    if (position != null) {
+                        out.or(liveIn.get(position));
+                    }
+                }
+
+                BitSet in = (BitSet) out.clone();
+                in.andNot(defs.get(i));
+                in.or(uses.get(i));
+
+                if (!in.equals(liveIn.get(i)) || !out.equals(liveOut.get(i))) {
+                    liveIn.set(i, in);
+                    liveOut.set(i, out);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private static List<Node> getSuccessors(Instruction instruction) {
+        List<Node> successors = new ArrayList<>(2);
+        if (instruction.getSucc1() != null) successors.add(instruction.getSucc1());
+        if (instruction.getSucc2() != null) successors.add(instruction.getSucc2());
+        return successors;
+    }
+
+    /**
+     * @return the variables each variable cannot share a register with: the ones live after each of its definitions
+     */
+    private List<BitSet> getInterference(List<BitSet> defs, List<BitSet> liveIn, List<BitSet> liveOut) {
+        List<BitSet> interference = new ArrayList<>();
+        for (int variable = 0; variable < names.size(); variable++) {
+            interference.add(new BitSet());
+        }
+
+        for (int i = 0; i < defs.size(); i++) {
+            BitSet def = defs.get(i);
+            for (int d = def.nextSetBit(0); d >= 0; d = def.nextSetBit(d + 1)) {
+                interference.get(d).or(liveOut.get(i));
+            }
+        }
+
+        // Variables read before they are written are live together from the start of the method
+        if (!liveIn.isEmpty()) {
+            BitSet entry = liveIn.get(0);
+            for (int v = entry.nextSetBit(0); v >= 0; v = entry.nextSetBit(v + 1)) {
+                interference.get(v).or(entry);
+            }
+        }
+
+        // Symmetric and without self edges
+        for (int v = 0; v < interference.size(); v++) {
+            interference.get(v).clear(v);
+            BitSet neighbours = interference.get(v);
+            for (int n = neighbours.nextSetBit(0); n >= 0; n = neighbours.nextSetBit(n + 1)) {
+                interference.get(n).set(v);
+            }
+        }
+        return interference;
+    }
+
+    /**
+     * Colours the graph in smallest-last order: the variable with fewest neighbours is removed from the graph until it
+     * is empty, and then each variable gets the lowest colour its neighbours do not have, from the last removed.
+     * @return the colour of each variable, from 0
+     */
+    private static int[] colour(List<BitSet> interference) {
+        int count = interference.size();
+        int[] degrees = new int[count];
+        for (int v = 0; v < count; v++) {
+            degrees[v] = interference.get(v).cardinality();
+        }
+
+        Deque<Integer> removed = new ArrayDeque<>();
+        BitSet remaining = new BitSet();
+        remaining.set(0, count);
+        while (!remaining.isEmpty()) {
+            int lowest = remaining.nextSetBit(0);
+            for (int v = remaining.nextSetBit(0); v >= 0; v = remaining.nextSetBit(v + 1)) {
+                if (degrees[v] < degrees[lowest]) lowest = v;
+            }
+
+            remaining.clear(lowest);
+            removed.push(lowest);
+            BitSet neighbours = interference.get(lowest);
+            for (int n = neighbours.nextSetBit(0); n >= 0; n = neighbours.nextSetBit(n + 1)) {
+                degrees[n]--;
+            }
+        }
+
+        int[] colours = new int[count];
+        BitSet coloured = new BitSet();
+        while (!removed.isEmpty()) {
+            int variable = removed.pop();
+            BitSet taken = new BitSet();
+            BitSet neighbours = interference.get(variable);
+            for (int n = neighbours.nextSetBit(0); n >= 0; n = neighbours.nextSetBit(n + 1)) {
+                if (coloured.get(n)) taken.set(colours[n]);
+            }
+
+            colours[variable] = taken.nextClearBit(0);
+            coloured.set(variable);
+        }
+        return colours;
+    }
+
+    /**
+     * Finds the variables the instruction writes and reads, as {@link JasminGenerator} stores and loads them
+     */
+    private void addDefsAndUses(Instruction instruction, BitSet def, BitSet use) {
+        switch (instruction.getInstType()) {
+            case ASSIGN: {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                Operand dest = (Operand) assign.getDest();
+                addDefsAndUses(assign.getRhs(), def, use);
+
+                if (dest instanceof ArrayOperand) {
+                    addUse(dest, use);
+                } else if (!(dest.getType().getTypeOfElement() == ElementType.OBJECTREF
+                        && assign.getRhs() instanceof CallInstruction)) {
+                    // A new object is stored by the call to its constructor
+                    addDef(dest, def);
+                }
+                break;
+            }
+            case NOPER:
+                addUse(((SingleOpInstruction) instruction).getSingleOperand(), use);
+                break;
+            case UNARYOPER:
+                addUse(((UnaryOpInstruction) instruction).getRightOperand(), use);
+                break;
+            case BINARYOPER: {
+                BinaryOpInstruction operation = (BinaryOpInstruction) instruction;
+                addUse(operation.getLeftOperand(), use);
+                addUse(operation.getRightOperand(), use);
+                break;
+            }
+            case CALL:
+                addCallDefsAndUses((CallInstruction) instruction, def, use);
+                break;
+            case BRANCH: {
+                CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                addUse(branch.getLeftOperand(), use);
+                addUse(branch.getRightOperand(), use);
+                break;
+            }
+            case PUTFIELD:
+                addUse(((PutFieldInstruction) instruction).getFirstOperand(), use);
+                addUse(((PutFieldInstruction) instruction).getThirdOperand(), use);
+                break;
+            case GETFIELD:
+                addUse(((GetFieldInstruction) instruction).getFirstOperand(), use);
+                break;
+            case RETURN: {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                if (ret.hasReturnValue()) addUse(ret.getOperand(), use);
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void addCallDefsAndUses(CallInstruction call, BitSet def, BitSet use) {
+        switch (call.getInvocationType()) {
+            case invokestatic:
+                // The first argument is the name of the class
+                break;
+            case invokespecial:
+                if (((LiteralElement) call.getSecondArg()).getLiteral().equals("\"<init>\"")) {
+                    addDef(call.getFirstArg(), def);
+                } else {
+                    addUse(call.getFirstArg(), use);
+                }
+                break;
+            case NEW:
+                // The first argument is the class or "array", only the size of an array is loaded
+                break;
+            default:
+                addUse(call.getFirstArg(), use);
+        }
+
+        if (call.getListOfOperands() != null) {
+            for (Element operand : call.getListOfOperands()) {
+                addUse(operand, use);
+            }
+        }
+    }
+
+    private void addUse(Element element, BitSet use) {
+        if (element instanceof ArrayOperand) {
+            for (Element index : ((ArrayOperand) element).getIndexOperands()) {
+                addUse(index, use);
+            }
+        }
+
+        int variable = getVariable(element);
+        if (variable >= 0) use.set(variable);
+    }
+
+    private void addDef(Element element, BitSet def) {
+        int variable = getVariable(element);
+        if (variable >= 0) def.set(variable);
+    }
+
+    /**
+     * @return the index of the local variable of the element, or -1 if it is a literal, "this", a parameter or a field
+     */
+    private int getVariable(Element element) {
+        if (!(element instanceof Operand) || element.getType().getTypeOfElement() == ElementType.THIS) {
+            return -1;
+        }
+
+        String name = ((Operand) element).getName();
+        Descriptor descriptor = method.getVarTable().get(name);
+        if (descriptor == null || descriptor.getScope() != VarScope.LOCAL || name.equals("this")) {
+            return -1;
+        }
+
+        return variables.computeIfAbsent(name, key -> {
+            names.add(key);
+            return names.size() - 1;
+        });
+    }
+}
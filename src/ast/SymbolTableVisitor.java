@@ -2,23 +2,24 @@ package ast;
 
 import pt.up.fe.comp.jmm.JmmNode;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
-import pt.up.fe.comp.jmm.analysis.table.Type;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp.jmm.analysis.table.Types;
+import pt.up.fe.comp.jmm.ast.ControlledJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
-import pt.up.fe.specs.util.utilities.StringLines;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
-public class SymbolTableVisitor extends PreorderJmmVisitor<String, String> {
+/**
+ * Fills the symbol table with the imports, the fields and the methods of the class. The bodies of the methods are not
+ * visited, other than their declarations.
+ */
+public class SymbolTableVisitor extends ControlledJmmVisitor<String, String> {
     private final JmmSymbolTable table;
     private String scope;
     private final List<Report> reports;
 
     public SymbolTableVisitor(JmmSymbolTable table, List<Report> reports) {
-        super(SymbolTableVisitor::reduce);
         this.table = table;
         this.reports = reports;
 
@@ -29,12 +30,11 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<String, String> {
         addVisit("ClassMethod", this::dealWithMethodDeclaration);
         addVisit("Param", this::dealWithParameter);
         addVisit("VarDeclaration", this::dealWithVarDeclaration);
-
-        setDefaultVisit(this::defaultVisit);
     }
 
     private String dealWithImport(JmmNode node, String space) {
         table.addImport(node.get("value"));
+        visitChildren(node, space);
         return space + "IMPORT";
     }
 
@@ -43,6 +43,7 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<String, String> {
         String lastImport = imports.get(imports.size() - 1);
         String newImport = lastImport + '.' + node.get("value");
         imports.set(imports.size() - 1, newImport);
+        visitChildren(node, space);
 
         return space + "IMPORT_AUX";
     }
@@ -56,6 +57,7 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<String, String> {
         }
 
         scope = "CLASS";
+        visitChildren(node, space);
         return space + "CLASS";
     }
 
@@ -93,6 +95,7 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<String, String> {
         table.addMethod(node.get("name"), JmmSymbolTable.getType(node, "return"));
 
         node.put("params", "");
+        visitDeclarations(node, space);
 
         return node.toString();
     }
@@ -100,13 +103,13 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<String, String> {
     private String dealWithParameter(JmmNode node, String space) {
         if (scope.equals("METHOD")) {
             Symbol field = new Symbol(JmmSymbolTable.getType(node, "type"), node.get("value"));
-            table.getCurrentMethod().addParameter(field);
+            table.addParameter(field);
 
             String paramType = field.getType().getName() + ((field.getType().isArray()) ? " []" : "");
             node.getParent().put("params", node.getParent().get("params") + paramType + ",");
         } else if (scope.equals("MAIN")) {
-            Symbol field = new Symbol(new Type("String", true), node.get("value"));
-            table.getCurrentMethod().addParameter(field);
+            Symbol field = new Symbol(Types.STRING_ARRAY, node.get("value"));
+            table.addParameter(field);
 
             String paramType = field.getType().getName() + ((field.getType().isArray()) ? " []" : "");
             node.getParent().put("params", node.getParent().get("params") + paramType + ",");
@@ -118,46 +121,23 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<String, String> {
     private String dealWithMainDeclaration(JmmNode node, String space) {
         scope = "MAIN";
 
-        table.addMethod("main", new Type("void", false));
+        table.addMethod("main", Types.VOID);
 
         node.put("params", "");
+        visitDeclarations(node, space);
 
         return node.toString();
     }
 
     /**
-     * Prints node information and appends space
-     *
-     * @param node  Node to be visited
-     * @param space Info passed down from other nodes
-     * @return New info to be returned
+     * Visits the parameters and the local variables of a method
      */
-    private String defaultVisit(JmmNode node, String space) {
-        String content = space + node.getKind();
-        String attrs = node.getAttributes()
-                .stream()
-                .filter(a -> !a.equals("line"))
-                .map(a -> a + "=" + node.get(a))
-                .collect(Collectors.joining(", ", "[", "]"));
-
-        content += ((attrs.length() > 2) ? attrs : "");
-
-        return content;
-    }
-
-    private static String reduce(String nodeResult, List<String> childrenResults) {
-        var content = new StringBuilder();
-
-        content.append(nodeResult).append("\n");
-
-        for (var childResult : childrenResults) {
-            var childContent = StringLines.getLines(childResult).stream()
-                    .map(line -> " " + line + "\n")
-                    .collect(Collectors.joining());
-
-            content.append(childContent);
+    private void visitDeclarations(JmmNode method, String space) {
+        for (int i = 0; i < method.getNumChildren(); i++) {
+            JmmNode child = method.getChild(i);
+            if (child.getKind().equals("Param") || child.getKind().equals("VarDeclaration")) {
+                visit(child, space);
+            }
         }
-
-        return content.toString();
     }
 }
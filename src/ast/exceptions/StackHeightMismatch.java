@@ -0,0 +1,7 @@
+package ast.exceptions;
+
+public class StackHeightMismatch extends Exception {
+    public StackHeightMismatch(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,275 @@
+package ast.ollir;
+
+import org.specs.comp.ollir.AccessModifiers;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ArrayType;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Field;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the {@link ClassUnit} of an {@link OllirClass} directly, without printing and parsing the OLLIR code.
+ * <p>
+ * The result is the same as parsing the output of {@link OllirClass#toOllir()}: the instructions, labels and elements
+ * are created as the OLLIR parser would create them.
+ */
+public class ClassUnitBuilder {
+    private final String className;
+    private final List<String> pendingLabels = new ArrayList<>();
+
+    private ClassUnitBuilder(String className) {
+        this.className = className;
+    }
+
+    public static ClassUnit build(OllirClass ollirClass) {
+        return new ClassUnitBuilder(ollirClass.getName()).buildClass(ollirClass);
+    }
+
+    private ClassUnit buildClass(OllirClass ollirClass) {
+        ClassUnit classUnit = new ClassUnit();
+
+        for (String importStmt : ollirClass.getImports()) {
+            classUnit.addImport(importStmt);
+        }
+        classUnit.setClassName(ollirClass.getName());
+        if (ollirClass.getSuperName() != null) classUnit.setSuperClass(ollirClass.getSuperName());
+        classUnit.setClassAccessModifier(AccessModifiers.DEFAULT);
+
+        for (OllirField ollirField : ollirClass.getFields()) {
+            Field field = new Field();
+            field.setFieldName(ollirField.getField().getName());
+            field.setFieldType(type(ollirField.getField().getType()));
+            field.setFieldAccessModifier(AccessModifiers.PUBLIC);
+            classUnit.addField(field);
+        }
+
+        classUnit.addMethod(buildConstructor(classUnit));
+        for (OllirMethod ollirMethod : ollirClass.getMethods()) {
+            classUnit.addMethod(buildMethod(classUnit, ollirMethod));
+        }
+
+        return classUnit;
+    }
+
+    private Method buildConstructor(ClassUnit classUnit) {
+        Method constructor = new Method(classUnit);
+        constructor.setMethodName(className);
+        constructor.setConstructMethod();
+        constructor.setMethodAccessModifier(AccessModifiers.DEFAULT);
+        constructor.setReturnType(new org.specs.comp.ollir.Type(ElementType.VOID));
+        constructor.addInstr(new CallInstruction(CallType.invokespecial, thisOperand(), methodName("<init>"),
+                new ArrayList<>(), new org.specs.comp.ollir.Type(ElementType.VOID)));
+        return constructor;
+    }
+
+    private Method buildMethod(ClassUnit classUnit, OllirMethod ollirMethod) {
+        Method method = new Method(classUnit);
+        method.setMethodName(ollirMethod.getName());
+        method.setMethodAccessModifier(AccessModifiers.PUBLIC);
+        if (ollirMethod.isStatic()) method.setStaticMethod();
+        method.setReturnType(type(ollirMethod.getReturnType()));
+
+        // Parameters are numbered from 1 in instance methods, "this" being the first
+        List<OllirOperand> parameters = ollirMethod.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            Operand parameter = new Operand(parameters.get(i).getName(), type(parameters.get(i).getType()));
+            parameter.setParamId(ollirMethod.isStatic() ? i : i + 1);
+            method.addParam(parameter);
+        }
+
+        pendingLabels.clear();
+        for (OllirInstruction ollirInstruction : ollirMethod.getInstructions()) {
+            if (ollirInstruction instanceof OllirLabel) {
+                pendingLabels.add(((OllirLabel) ollirInstruction).getName());
+                continue;
+            }
+
+            Instruction instruction = instruction(ollirInstruction);
+            for (String label : pendingLabels) {
+                method.addLabel(label, instruction);
+            }
+            pendingLabels.clear();
+            method.addInstr(instruction);
+        }
+
+        return method;
+    }
+
+    private Instruction instruction(OllirInstruction instruction) {
+        if (instruction instanceof OllirAssign) {
+            OllirAssign assign = (OllirAssign) instruction;
+            return new AssignInstruction(element(assign.getDestination()), type(assign.getDestination().getType()),
+                    expression(assign.getValue()));
+        } else if (instruction instanceof OllirCallInstruction) {
+            return call(((OllirCallInstruction) instruction).getCall());
+        } else if (instruction instanceof OllirPutField) {
+            OllirPutField putField = (OllirPutField) instruction;
+            return new PutFieldInstruction(thisOperand(), element(putField.getField()), element(putField.getValue()),
+                    new org.specs.comp.ollir.Type(ElementType.VOID));
+        } else if (instruction instanceof OllirReturn) {
+            OllirElement value = ((OllirReturn) instruction).getValue();
+            return value == null ? new ReturnInstruction() : new ReturnInstruction(element(value));
+        } else if (instruction instanceof OllirGoto) {
+            return new GotoInstruction(((OllirGoto) instruction).getLabel());
+        } else if (instruction instanceof OllirBranch) {
+            OllirBranch branch = (OllirBranch) instruction;
+            OllirBinaryOperation condition = branch.getCondition();
+            return new CondBranchInstruction(element(condition.getLeft()), element(condition.getRight()),
+                    operation(condition), branch.getLabel());
+        }
+
+        throw new IllegalArgumentException("Unexpected OLLIR instruction: " + instruction.toOllir());
+    }
+
+    private Instruction expression(OllirExpression expression) {
+        if (expression instanceof OllirElement) {
+            return new SingleOpInstruction(element((OllirElement) expression));
+        } else if (expression instanceof OllirBinaryOperation) {
+            OllirBinaryOperation operation = (OllirBinaryOperation) expression;
+            return new BinaryOpInstruction(element(operation.getLeft()), operation(operation),
+                    element(operation.getRight()));
+        } else if (expression instanceof OllirCall) {
+            return call((OllirCall) expression);
+        } else if (expression instanceof OllirGetField) {
+            OllirGetField getField = (OllirGetField) expression;
+            return new GetFieldInstruction(thisOperand(), element(getField.getField()), type(getField.getType()));
+        }
+
+        throw new IllegalArgumentException("Unexpected OLLIR expression: " + expression.toOllir());
+    }
+
+    private CallInstruction call(OllirCall call) {
+        ArrayList<Element> arguments = new ArrayList<>();
+        for (OllirElement argument : call.getArguments()) {
+            arguments.add(element(argument));
+        }
+
+        switch (call.getInvocation()) {
+            case NEW:
+                Operand target;
+                if (call.getTarget() != null) {
+                    String name = ((OllirReference) call.getTarget()).getName();
+                    target = new Operand(name, new ClassType(ElementType.OBJECTREF, name));
+                } else {
+                    target = new Operand("array", new ArrayType());
+                }
+                return new CallInstruction(CallType.NEW, target, arguments, type(call.getType()));
+            case arraylength:
+                return new CallInstruction(CallType.arraylength, element(call.getTarget()), type(call.getType()));
+            default:
+                return new CallInstruction(call.getInvocation(), element(call.getTarget()),
+                        methodName(call.getMethod()), arguments, type(call.getType()));
+        }
+    }
+
+    private Element element(OllirElement element) {
+        if (element instanceof OllirLiteral) {
+            return new LiteralElement(((OllirLiteral) element).getValue(), type(element.getType()));
+        } else if (element instanceof OllirArrayOperand) {
+            OllirArrayOperand arrayOperand = (OllirArrayOperand) element;
+            ArrayList<Element> indexes = new ArrayList<>();
+            indexes.add(element(arrayOperand.getIndex()));
+            return parameter(new ArrayOperand(arrayOperand.getName(), type(arrayOperand.getType()), indexes),
+                    arrayOperand.getParameter());
+        } else if (element instanceof OllirOperand) {
+            OllirOperand operand = (OllirOperand) element;
+            return parameter(new Operand(operand.getName(), type(operand.getType())), operand.getParameter());
+        } else if (element instanceof OllirReference) {
+            OllirReference reference = (OllirReference) element;
+            if (reference.isThis()) return thisOperand();
+            return new Operand(reference.getName(), new ClassType(ElementType.CLASS, reference.getName()));
+        }
+
+        throw new IllegalArgumentException("Unexpected OLLIR element: " + element.toOllir());
+    }
+
+    private static Operand parameter(Operand operand, String parameter) {
+        // "$n" prefix of the parameters
+        if (parameter != null) operand.setParamId(Integer.parseInt(parameter.substring(1)));
+        return operand;
+    }
+
+    private Operand thisOperand() {
+        return new Operand("this", new ClassType(ElementType.THIS, className));
+    }
+
+    private static LiteralElement methodName(String name) {
+        return new LiteralElement("\"" + name + "\"", new org.specs.comp.ollir.Type(ElementType.STRING));
+    }
+
+    private static Operation operation(OllirBinaryOperation operation) {
+        return new Operation(operationType(operation.getOperator()), type(operation.getOperandType()));
+    }
+
+    private static OperationType operationType(String operator) {
+        switch (operator) {
+            case "+":
+                return OperationType.ADD;
+            case "-":
+                return OperationType.SUB;
+            case "*":
+                return OperationType.MUL;
+            case "/":
+                return OperationType.DIV;
+            case "<":
+                return OperationType.LTH;
+            case ">=":
+                return OperationType.GTE;
+            case "&&":
+                return OperationType.ANDB;
+            case "!":
+                return OperationType.NOTB;
+            default:
+                throw new IllegalArgumentException("Unexpected OLLIR operator: " + operator);
+        }
+    }
+
+    private static org.specs.comp.ollir.Type type(Type type) {
+        if (type.isArray()) {
+            return new ArrayType(1, new int[]{0}, elementType(type));
+        }
+
+        ElementType elementType = elementType(type);
+        if (elementType == ElementType.OBJECTREF) {
+            return new ClassType(ElementType.OBJECTREF, type.getName());
+        }
+        return new org.specs.comp.ollir.Type(elementType);
+    }
+
+    private static ElementType elementType(Type type) {
+        switch (type.getKind()) {
+            case INT:
+                return ElementType.INT32;
+            case BOOLEAN:
+                return ElementType.BOOLEAN;
+            case VOID:
+                return ElementType.VOID;
+            case STRING:
+                return ElementType.STRING;
+            default:
+                return ElementType.OBJECTREF;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+import pt.up.fe.comp.jmm.analysis.table.Types;
+
+/**
+ * An element of an array variable, e.g. a[i.i32].i32
+ */
+public class OllirArrayOperand extends OllirOperand {
+    private final OllirElement index;
+
+    public OllirArrayOperand(OllirOperand array, OllirElement index) {
+        super(array.getName(), array.getParameter(), Types.of(array.getType().getName(), false));
+        this.index = index;
+    }
+
+    public OllirElement getIndex() {
+        return index;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        if (getParameter() != null) ollir.append(getParameter()).append(".");
+        ollir.append(getName()).append("[");
+        index.toOllir(ollir);
+        ollir.append("]").append(OllirTemplates.type(getType()));
+    }
+}
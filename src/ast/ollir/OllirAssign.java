@@ -0,0 +1,32 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+
+/**
+ * Assignment to a variable or array element, e.g. a.i32 :=.i32 b.i32 +.i32 1.i32;
+ */
+public class OllirAssign implements OllirInstruction {
+    private final OllirOperand destination;
+    private final OllirExpression value;
+
+    public OllirAssign(OllirOperand destination, OllirExpression value) {
+        this.destination = destination;
+        this.value = value;
+    }
+
+    public OllirOperand getDestination() {
+        return destination;
+    }
+
+    public OllirExpression getValue() {
+        return value;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        destination.toOllir(ollir);
+        ollir.append(" :=").append(OllirTemplates.type(destination.getType())).append(" ");
+        value.toOllir(ollir);
+        ollir.append(";");
+    }
+}
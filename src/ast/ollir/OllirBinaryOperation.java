@@ -0,0 +1,58 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * Binary operation between two elements, e.g. a.i32 +.i32 b.i32
+ * <p>
+ * The negation is also written as a binary operation with the same operand on both sides (a.bool !.bool a.bool).
+ */
+public class OllirBinaryOperation implements OllirExpression {
+    private final OllirElement left;
+    private final String operator;
+    private final Type operandType;
+    private final OllirElement right;
+    private final Type type;
+
+    /**
+     * @param operator    one of +, -, *, /, <, >=, && or !
+     * @param operandType type of the operands, printed after the operator
+     * @param type        type of the result
+     */
+    public OllirBinaryOperation(OllirElement left, String operator, Type operandType, OllirElement right, Type type) {
+        this.left = left;
+        this.operator = operator;
+        this.operandType = operandType;
+        this.right = right;
+        this.type = type;
+    }
+
+    public OllirElement getLeft() {
+        return left;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public Type getOperandType() {
+        return operandType;
+    }
+
+    public OllirElement getRight() {
+        return right;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        left.toOllir(ollir);
+        ollir.append(" ").append(operator).append(OllirTemplates.type(operandType)).append(" ");
+        right.toOllir(ollir);
+    }
+}
@@ -0,0 +1,29 @@
+package ast.ollir;
+
+/**
+ * Conditional jump, e.g. if (a.bool !.bool a.bool) goto else1;
+ */
+public class OllirBranch implements OllirInstruction {
+    private final OllirBinaryOperation condition;
+    private final String label;
+
+    public OllirBranch(OllirBinaryOperation condition, String label) {
+        this.condition = condition;
+        this.label = label;
+    }
+
+    public OllirBinaryOperation getCondition() {
+        return condition;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append("if (");
+        condition.toOllir(ollir);
+        ollir.append(") goto ").append(label).append(";");
+    }
+}
@@ -0,0 +1,89 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+import org.specs.comp.ollir.CallType;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.List;
+
+/**
+ * A call: method invocation, arraylength or new.
+ * <p>
+ * For invocations the target is the object (or class) and the method is its name. For "new" the target is the class
+ * of the object, or null for arrays, in which case the size is the single argument.
+ */
+public class OllirCall implements OllirExpression {
+    private final CallType invocation;
+    private final OllirElement target;
+    private final String method;
+    private final List<OllirElement> arguments;
+    private final Type type;
+
+    public OllirCall(CallType invocation, OllirElement target, String method, List<OllirElement> arguments, Type type) {
+        this.invocation = invocation;
+        this.target = target;
+        this.method = method;
+        this.arguments = arguments;
+        this.type = type;
+    }
+
+    public CallType getInvocation() {
+        return invocation;
+    }
+
+    public OllirElement getTarget() {
+        return target;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public List<OllirElement> getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return true if this call creates an object, which must be followed by a call to its constructor
+     */
+    public boolean isObjectCreation() {
+        return invocation == CallType.NEW && target != null;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        switch (invocation) {
+            case NEW:
+                ollir.append("new(");
+                if (target != null) {
+                    target.toOllir(ollir);
+                } else {
+                    ollir.append("array, ");
+                    arguments.get(0).toOllir(ollir);
+                }
+                ollir.append(")");
+                break;
+            case arraylength:
+                ollir.append("arraylength(");
+                target.toOllir(ollir);
+                ollir.append(")");
+                break;
+            default:
+                ollir.append(invocation.name()).append("(");
+                target.toOllir(ollir);
+                ollir.append(", \"").append(method).append("\"");
+                for (OllirElement argument : arguments) {
+                    ollir.append(", ");
+                    argument.toOllir(ollir);
+                }
+                ollir.append(")");
+                break;
+        }
+        ollir.append(OllirTemplates.type(type));
+    }
+}
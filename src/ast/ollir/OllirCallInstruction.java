@@ -0,0 +1,22 @@
+package ast.ollir;
+
+/**
+ * A call whose result is discarded, e.g. invokestatic(io, "println", a.i32).V;
+ */
+public class OllirCallInstruction implements OllirInstruction {
+    private final OllirCall call;
+
+    public OllirCallInstruction(OllirCall call) {
+        this.call = call;
+    }
+
+    public OllirCall getCall() {
+        return call;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        call.toOllir(ollir);
+        ollir.append(";");
+    }
+}
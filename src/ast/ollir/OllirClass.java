@@ -0,0 +1,81 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Root of the OLLIR code of a class: imports, fields and methods.
+ * <p>
+ * The constructor is implicit, it only calls the constructor of the super class.
+ */
+public class OllirClass implements OllirNode {
+    private final String name;
+    private final String superName;
+    private final List<String> imports;
+    private final List<OllirField> fields = new ArrayList<>();
+    private final List<OllirMethod> methods = new ArrayList<>();
+
+    /**
+     * @param superName the name of the super class, or null
+     */
+    public OllirClass(String name, String superName, List<String> imports) {
+        this.name = name;
+        this.superName = superName;
+        this.imports = imports;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<String> getImports() {
+        return imports;
+    }
+
+    public List<OllirField> getFields() {
+        return fields;
+    }
+
+    public List<OllirMethod> getMethods() {
+        return methods;
+    }
+
+    public void addField(OllirField field) {
+        fields.add(field);
+    }
+
+    public void addMethod(OllirMethod method) {
+        methods.add(method);
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        for (String importStmt : imports) {
+            ollir.append("import ").append(importStmt).append(";\n");
+        }
+        ollir.append("\n");
+
+        ollir.append(OllirTemplates.classTemplate(name, superName));
+
+        for (OllirField field : fields) {
+            field.toOllir(ollir);
+            ollir.append("\n");
+        }
+        ollir.append("\n");
+
+        ollir.append(OllirTemplates.constructor(name)).append("\n\n");
+
+        for (int i = 0; i < methods.size(); i++) {
+            if (i > 0) ollir.append("\n\n");
+            methods.get(i).toOllir(ollir);
+        }
+
+        ollir.append(OllirTemplates.closeBrackets());
+    }
+}
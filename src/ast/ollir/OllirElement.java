@@ -0,0 +1,19 @@
+package ast.ollir;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * A single value (literal or variable) that can be used as an operand.
+ */
+public abstract class OllirElement implements OllirExpression {
+    private final Type type;
+
+    protected OllirElement(Type type) {
+        this.type = type;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+}
@@ -0,0 +1,10 @@
+package ast.ollir;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * Right-hand side of an assignment: an element, an operation or a call.
+ */
+public interface OllirExpression extends OllirNode {
+    Type getType();
+}
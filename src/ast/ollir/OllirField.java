@@ -0,0 +1,29 @@
+package ast.ollir;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+
+/**
+ * Declaration of a field, e.g. .field public a.i32;
+ */
+public class OllirField implements OllirNode {
+    private final OllirOperand field;
+
+    public OllirField(OllirOperand field) {
+        this.field = field;
+    }
+
+    public OllirField(Symbol symbol) {
+        this(new OllirOperand(symbol.getName(), symbol.getType()));
+    }
+
+    public OllirOperand getField() {
+        return field;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append(".field public ");
+        field.toOllir(ollir);
+        ollir.append(";");
+    }
+}
@@ -0,0 +1,31 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * Read of a field of "this", e.g. getfield(this, a.i32).i32
+ */
+public class OllirGetField implements OllirExpression {
+    private final OllirOperand field;
+
+    public OllirGetField(OllirOperand field) {
+        this.field = field;
+    }
+
+    public OllirOperand getField() {
+        return field;
+    }
+
+    @Override
+    public Type getType() {
+        return field.getType();
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append("getfield(this, ");
+        field.toOllir(ollir);
+        ollir.append(")").append(OllirTemplates.type(getType()));
+    }
+}
@@ -0,0 +1,21 @@
+package ast.ollir;
+
+/**
+ * Unconditional jump, e.g. goto loop1;
+ */
+public class OllirGoto implements OllirInstruction {
+    private final String label;
+
+    public OllirGoto(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append("goto ").append(label).append(";");
+    }
+}
@@ -0,0 +1,7 @@
+package ast.ollir;
+
+/**
+ * An instruction in the body of a method, printed in a line of its own.
+ */
+public interface OllirInstruction extends OllirNode {
+}
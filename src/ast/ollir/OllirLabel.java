@@ -0,0 +1,21 @@
+package ast.ollir;
+
+/**
+ * Label of the next instruction, e.g. loop1:
+ */
+public class OllirLabel implements OllirInstruction {
+    private final String name;
+
+    public OllirLabel(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append(name).append(":");
+    }
+}
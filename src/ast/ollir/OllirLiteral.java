@@ -0,0 +1,25 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * Integer or boolean literal, e.g. 10.i32 or 1.bool
+ */
+public class OllirLiteral extends OllirElement {
+    private final String value;
+
+    public OllirLiteral(String value, Type type) {
+        super(type);
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append(value).append(OllirTemplates.type(getType()));
+    }
+}
@@ -0,0 +1,69 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A method and the list of its instructions.
+ */
+public class OllirMethod implements OllirNode {
+    private final String name;
+    private final List<OllirOperand> parameters;
+    private final Type returnType;
+    private final boolean isStatic;
+    private final List<OllirInstruction> instructions = new ArrayList<>();
+
+    public OllirMethod(String name, List<OllirOperand> parameters, Type returnType, boolean isStatic) {
+        this.name = name;
+        this.parameters = parameters;
+        this.returnType = returnType;
+        this.isStatic = isStatic;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<OllirOperand> getParameters() {
+        return parameters;
+    }
+
+    public Type getReturnType() {
+        return returnType;
+    }
+
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    public List<OllirInstruction> getInstructions() {
+        return instructions;
+    }
+
+    public void addInstruction(OllirInstruction instruction) {
+        instructions.add(instruction);
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append(".method public ");
+        if (isStatic) ollir.append("static ");
+
+        ollir.append(name).append("(");
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) ollir.append(", ");
+            parameters.get(i).toOllir(ollir);
+        }
+        ollir.append(")").append(OllirTemplates.type(returnType)).append(OllirTemplates.openBrackets());
+
+        for (OllirInstruction instruction : instructions) {
+            instruction.toOllir(ollir);
+            ollir.append("\n");
+        }
+
+        ollir.append("}");
+    }
+}
@@ -0,0 +1,17 @@
+package ast.ollir;
+
+/**
+ * A piece of OLLIR code (class, method, instruction or expression) that can print itself.
+ */
+public interface OllirNode {
+    /**
+     * Appends the OLLIR code of this node to the given builder.
+     */
+    void toOllir(StringBuilder ollir);
+
+    default String toOllir() {
+        StringBuilder ollir = new StringBuilder();
+        toOllir(ollir);
+        return ollir.toString();
+    }
+}
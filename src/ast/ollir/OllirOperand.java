@@ -0,0 +1,41 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * A local variable, parameter, field or temporary, e.g. $1.a.i32
+ */
+public class OllirOperand extends OllirElement {
+    private final String name;
+    private final String parameter;
+
+    /**
+     * @param name      name of the variable, already escaped
+     * @param parameter the "$n" prefix of a parameter, or null
+     * @param type      type of the variable
+     */
+    public OllirOperand(String name, String parameter, Type type) {
+        super(type);
+        this.name = name;
+        this.parameter = parameter;
+    }
+
+    public OllirOperand(String name, Type type) {
+        this(name, null, type);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        if (parameter != null) ollir.append(parameter).append(".");
+        ollir.append(name).append(OllirTemplates.type(getType()));
+    }
+}
@@ -0,0 +1,31 @@
+package ast.ollir;
+
+/**
+ * Write of a field of "this", e.g. putfield(this, a.i32, 1.i32).V;
+ */
+public class OllirPutField implements OllirInstruction {
+    private final OllirOperand field;
+    private final OllirElement value;
+
+    public OllirPutField(OllirOperand field, OllirElement value) {
+        this.field = field;
+        this.value = value;
+    }
+
+    public OllirOperand getField() {
+        return field;
+    }
+
+    public OllirElement getValue() {
+        return value;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append("putfield(this, ");
+        field.toOllir(ollir);
+        ollir.append(", ");
+        value.toOllir(ollir);
+        ollir.append(").V;");
+    }
+}
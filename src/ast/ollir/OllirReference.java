@@ -0,0 +1,28 @@
+package ast.ollir;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * "this" or the name of a class, used as the target of a call.
+ */
+public class OllirReference extends OllirElement {
+    private final String name;
+
+    public OllirReference(String name, Type type) {
+        super(type);
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isThis() {
+        return "this".equals(name);
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append(name);
+    }
+}
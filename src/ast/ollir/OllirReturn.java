@@ -0,0 +1,38 @@
+package ast.ollir;
+
+import ast.OllirTemplates;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * Return from a method, e.g. ret.i32 a.i32; or ret.V;
+ */
+public class OllirReturn implements OllirInstruction {
+    private final Type type;
+    private final OllirElement value;
+
+    /**
+     * @param value the returned value, or null for void methods
+     */
+    public OllirReturn(Type type, OllirElement value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public OllirElement getValue() {
+        return value;
+    }
+
+    @Override
+    public void toOllir(StringBuilder ollir) {
+        ollir.append("ret").append(OllirTemplates.type(type));
+        if (value != null) {
+            ollir.append(" ");
+            value.toOllir(ollir);
+        }
+        ollir.append(";");
+    }
+}
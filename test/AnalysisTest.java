@@ -5,14 +5,21 @@ import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.JmmParserResult;
 import pt.up.fe.comp.jmm.analysis.JmmAnalysis;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.analysis.table.Types;
 import pt.up.fe.specs.util.SpecsIo;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 public class AnalysisTest {
     private final List<String> validFiles = Arrays.asList(
@@ -79,4 +86,121 @@ public class AnalysisTest {
             System.out.print("  - PASSED\n");
         }
     }
+
+    @Test
+    public void testCallArguments() {
+        // Arguments of every kind are part of the signature the call is resolved with
+        String code = "class Args {\n"
+                + " public int f(boolean b) { return 1; }\n"
+                + " public int g(int[] a, boolean b) { return 2; }\n"
+                + " public int h(int x) { int y; boolean b; b = true; y = this.f(!b); y = this.f(x < 2); y = this.g(new int[2], b && b); return y; }\n"
+                + " public static void main(String[] args) { }\n"
+                + "}";
+        JmmSemanticsResult result = TestUtils.analyse(code);
+        TestUtils.noErrors(result.getReports());
+    }
+
+    @Test
+    public void testResultsWithoutType() {
+        // An undeclared variable names no type, so it matches no return type, variable or parameter
+        String code = "class NoType {\n"
+                + " public int f(int x) { return y; }\n"
+                + " public int g() { int a; a = this.f(z); return a; }\n"
+                + " public static void main(String[] args) { }\n"
+                + "}";
+        JmmSemanticsResult result = TestUtils.analyse(code);
+        TestUtils.mustFail(result.getReports());
+
+        // Types built with the constructor are equal to the shared ones
+        assertEquals(Types.INT_ARRAY, new Type("int", true));
+        assertSame(Types.INT_ARRAY, Types.of(new Type("int", true)));
+    }
+
+    @Test
+    public void testTypeWithoutName() {
+        try {
+            Types.of(null, false);
+            fail();
+        } catch (NullPointerException e) {
+            assertEquals("A type needs a name", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParallelAnalysis() {
+        PrintStream noLog = new PrintStream(OutputStream.nullOutputStream());
+        List<String> files = new ArrayList<>(validFiles);
+        files.addAll(semanticErrorFiles);
+        for (String filename : files) {
+            JmmParserResult parserResult = TestUtils.parse(SpecsIo.getResource(filename));
+            JmmSemanticsResult sequential = new AnalysisStage(noLog, false).semanticAnalysis(parserResult);
+            JmmSemanticsResult parallel = new AnalysisStage(noLog, true).semanticAnalysis(parserResult);
+
+            assertEquals(filename, sequential.getReports().toString(), parallel.getReports().toString());
+            assertEquals(filename, sequential.getSymbolTable().toString(), parallel.getSymbolTable().toString());
+        }
+    }
+
+    @Test
+    public void testParallelCompactAnalysis() {
+        // The methods of a compact AST are analysed by different threads reading the same arena
+        PrintStream noLog = new PrintStream(OutputStream.nullOutputStream());
+        for (String filename : validFiles) {
+            String code = SpecsIo.getResource(filename);
+            JmmSemanticsResult expected = TestUtils.analyse(code);
+            JmmSemanticsResult parallel = new AnalysisStage(noLog, true).semanticAnalysis(new Main().parse(code, true));
+            TestUtils.noErrors(parallel.getReports());
+
+            assertEquals(filename, expected.getSymbolTable().toString(), parallel.getSymbolTable().toString());
+            // The OLLIR generation finds what the analysis resolved for each node
+            assertEquals(filename, new OptimizationStage().toOllir(expected).getOllirCode(),
+                    new OptimizationStage().toOllir(parallel).getOllirCode());
+        }
+    }
+
+    /**
+     * Call this method to compare the sequential and the parallel analysis of a class with thousands of methods or add
+     * @Test
+     */
+    public void parallelAnalysisBenchmark() {
+        String code = TestUtils.generateBigClass(5000, "int total;\n");
+
+        PrintStream noLog = new PrintStream(OutputStream.nullOutputStream());
+        JmmParserResult parserResult = TestUtils.parse(code);
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            new AnalysisStage(noLog, false).semanticAnalysis(parserResult);
+            long sequential = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            new AnalysisStage(noLog, true).semanticAnalysis(parserResult);
+            long parallel = System.nanoTime() - start;
+
+            System.out.printf("Sequential: %d ms | Parallel (%d threads): %d ms%n", sequential / 1_000_000,
+                    ForkJoinPool.commonPool().getParallelism(), parallel / 1_000_000);
+        }
+    }
+
+    /**
+     * Call this method to measure the analysis of expressions with thousands of terms or add @Test
+     */
+    public void expressionsBenchmark() {
+        // The traversals do not recurse on the operands, so the expressions need no bigger stack than the default one
+        for (int terms = 1000; terms <= 100000; terms *= 10) {
+            StringBuilder code = new StringBuilder("class Expressions {\npublic int m(int a) {\nint b;\nb = a");
+            for (int i = 1; i < terms; i++) {
+                code.append(i % 2 == 0 ? " + a" : " * 2");
+            }
+            code.append(";\nreturn b; }\npublic static void main(String[] args) { }\n}\n");
+
+            JmmParserResult parserResult = TestUtils.parse(code.toString());
+
+            long start = System.nanoTime();
+            JmmSemanticsResult result = new AnalysisStage().semanticAnalysis(parserResult);
+            long time = System.nanoTime() - start;
+
+            TestUtils.noErrors(result.getReports());
+            System.out.printf("%d terms: %d ms%n", terms, time / 1_000_000);
+        }
+    }
 }
@@ -11,12 +11,40 @@
  * specific language governing permissions and limitations under the License. under the License.
  */
 
+import ast.JasminGenerator;
+import ast.JasminStackAnalysis;
+import ast.exceptions.StackHeightMismatch;
 import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.OllirErrorException;
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.jasmin.JasminRunner;
+import pt.up.fe.comp.jmm.jasmin.JasminUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.specs.util.SpecsIo;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class BackendTest {
     @Test
@@ -143,4 +171,282 @@ public class BackendTest {
 
         String output = result.run("10000000");
     }
+
+    @Test
+    public void testJasminToWriter() {
+        OllirResult ollirResult = TestUtils.optimize(SpecsIo.getResource("fixtures/public/QuickSort.jmm"));
+        JasminResult expected = new BackendStage().toJasmin(ollirResult);
+
+        StringWriter writer = new StringWriter();
+        List<Report> reports = new BackendStage().toJasmin(TestUtils.optimize(SpecsIo.getResource("fixtures/public/QuickSort.jmm")), writer);
+        TestUtils.noErrors(reports);
+        assertEquals(expected.getJasminCode(), writer.toString());
+
+        File classFile = JasminUtils.assemble(new StringReader(writer.toString()), "QuickSort.j", SpecsIo.getTempFolder("jasmin"));
+        assertTrue(classFile.isFile());
+    }
+
+    @Test
+    public void testCompileToBytes() {
+        JasminResult result = TestUtils.backend(SpecsIo.getResource("fixtures/public/HelloWorld.jmm"));
+        TestUtils.noErrors(result.getReports());
+
+        byte[] classBytes = result.compileToBytes();
+        assertEquals(0xCAFEBABE, ByteBuffer.wrap(classBytes).getInt());
+        assertArrayEquals(SpecsIo.readAsBytes(result.compile()), classBytes);
+    }
+
+    @Test
+    public void testRunInNewJvm() {
+        JasminResult result = TestUtils.backend(SpecsIo.getResource("fixtures/public/Fibonacci.jmm"));
+        TestUtils.noErrors(result.getReports());
+
+        String output = result.run("20");
+        assertEquals(result.runInNewJvm(Collections.emptyList(), Arrays.asList(TestUtils.getLibsClasspath()), "20"), output);
+    }
+
+    @Test
+    public void testRunawayProgram() throws InterruptedException {
+        // Prints forever, ignoring interruptions, and pauses 1 ms between prints so it does not keep a processor busy
+        String code = ".class Runaway\n.super java/lang/Object\n" +
+                ".method public static main([Ljava/lang/String;)V\n.limit stack 2\n.limit locals 1\n" +
+                "Loop:\ngetstatic java/lang/System/out Ljava/io/PrintStream;\nldc \"x\"\n" +
+                "invokevirtual java/io/PrintStream/print(Ljava/lang/String;)V\n" +
+                "invokestatic java/lang/Thread/interrupted()Z\npop\n" +
+                "ldc2_w 1000000\ninvokestatic java/util/concurrent/locks/LockSupport/parkNanos(J)V\n" +
+                "goto Loop\n.end method\n";
+        byte[] classBytes = new JasminResult("Runaway", code, Collections.emptyList()).compileToBytes();
+
+        PrintStream previousOut = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(captured, true);
+        System.setOut(out);
+        try {
+            String output = new JasminRunner("Runaway", classBytes, Collections.emptyList()).run(Collections.emptyList(), null, 200_000_000L);
+            assertTrue(output.contains("Program did not finish"));
+
+            // The program keeps running, but nothing it writes reaches the output of this JVM
+            int before = captured.size();
+            System.out.println("after");
+            Thread.sleep(200);
+            assertEquals("after" + System.lineSeparator(), captured.toString().substring(before));
+        } finally {
+            System.setOut(previousOut);
+        }
+
+        // Other programs still run
+        JasminResult result = TestUtils.backend(SpecsIo.getResource("fixtures/public/HelloWorld.jmm"));
+        assertEquals("Hello, World!", result.run().trim());
+    }
+
+    @Test
+    public void testCompileServer() throws IOException {
+        byte[] code = SpecsIo.getResource("fixtures/public/HelloWorld.jmm").getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream requests = new ByteArrayOutputStream();
+        for (int i = 0; i < 2; i++) {
+            requests.write(("COMPILE " + code.length + "\n").getBytes(StandardCharsets.UTF_8));
+            requests.write(code);
+        }
+        requests.write("COMPILE 5\nclassQUIT\n".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream answers = new ByteArrayOutputStream();
+        new CompileServer().serve(new ByteArrayInputStream(requests.toByteArray()), answers);
+
+        // The parser is reused, so both compilations must give the same class
+        String[] answer = answers.toString(StandardCharsets.ISO_8859_1).split("END\n", -1);
+        assertEquals(4, answer.length);
+        assertTrue(answer[0].startsWith("OK HelloWorld\n"));
+        assertTrue(answer[0].contains("\nCLASS "));
+        assertEquals(answer[0], answer[1]);
+        assertTrue(answer[2].startsWith("ERROR\n"));
+        assertEquals("", answer[3]);
+    }
+
+    @Test
+    public void testCompileServerInvalidRequests() throws IOException {
+        String requests = "COMPILE abc\nCOMPILE -1\nHELLO\nCOMPILE 100\nclass";
+        ByteArrayOutputStream answers = new ByteArrayOutputStream();
+        new CompileServer().serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), answers);
+
+        // Each bad request is answered with an error and the server goes on until the input ends
+        String[] answer = answers.toString(StandardCharsets.UTF_8).split("END\n", -1);
+        assertEquals(5, answer.length);
+        assertEquals("ERROR\nREPORTS 37\nInvalid number of bytes: COMPILE abc\n\n", answer[0]);
+        assertEquals("ERROR\nREPORTS 36\nInvalid number of bytes: COMPILE -1\n\n", answer[1]);
+        assertEquals("ERROR\nREPORTS 23\nUnknown request: HELLO\n\n", answer[2]);
+        assertEquals("ERROR\nREPORTS 35\nRequest ended after 5 of 100 bytes\n\n", answer[3]);
+        assertEquals("", answer[4]);
+    }
+
+    @Test
+    public void testCompileServerDeepCode() {
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) expression.append("1 + (");
+        expression.append("1");
+        for (int i = 0; i < 100_000; i++) expression.append(")");
+        String code = "class Deep { public int f() { return " + expression + "; } }";
+
+        // Running out of stack fails this compilation only
+        CompileServer server = new CompileServer();
+        assertFalse(server.compile(code).isSuccess());
+        assertTrue(server.compile(SpecsIo.getResource("fixtures/public/HelloWorld.jmm")).isSuccess());
+    }
+
+    @Test
+    public void testBatchCompiler() {
+        List<String> names = Arrays.asList("FindMaximum", "HelloWorld", "Lazysort", "Life", "MonteCarloPi",
+                "QuickSort", "Simple", "TicTacToe", "WhileAndIF");
+        List<File> files = new ArrayList<>();
+        for (String name : names) {
+            files.add(new File("test/fixtures/public/" + name + ".jmm"));
+        }
+
+        List<BatchCompiler.UnitResult> results = new BatchCompiler(4, null).compile(files);
+        for (int i = 0; i < names.size(); i++) {
+            BatchCompiler.UnitResult result = results.get(i);
+            assertTrue(result.toString(), result.isSuccess());
+            assertEquals(names.get(i), result.getClassName());
+        }
+    }
+
+    @Test
+    public void testRegisterAllocation() {
+        String code = SpecsIo.getResource("fixtures/public/WhileAndIF.jmm");
+        OllirResult ollirResult = TestUtils.optimize(code);
+
+        JasminResult result = new BackendStage(false, 0).toJasmin(ollirResult);
+        TestUtils.noErrors(result.getReports());
+        // args, a, b, d, c and one register shared by the temporaries
+        assertTrue(result.getJasminCode().contains(".limit locals 6\n"));
+
+        String output = result.run();
+        assertEquals(SpecsIo.getResource("fixtures/public/WhileAndIF.txt").trim().replace("\r\n", "\n"), output.trim().replace("\r\n", "\n"));
+
+        // Within the limit
+        TestUtils.noErrors(new BackendStage(false, 6).toJasmin(TestUtils.optimize(code)).getReports());
+        TestUtils.mustFail(new BackendStage(false, 5).toJasmin(TestUtils.optimize(code)).getReports());
+    }
+
+    @Test
+    public void testRegisterLimitBoundary() {
+        String code = SpecsIo.getResource("fixtures/public/Life.jmm");
+        JasminResult unlimited = new BackendStage(false, 0).toJasmin(TestUtils.optimize(code));
+        TestUtils.noErrors(unlimited.getReports());
+
+        // The limit is checked against the registers of the method that uses the most
+        Matcher locals = Pattern.compile("\\.limit locals (\\d+)\n").matcher(unlimited.getJasminCode());
+        int used = 0;
+        while (locals.find()) used = Math.max(used, Integer.parseInt(locals.group(1)));
+
+        TestUtils.noErrors(new BackendStage(false, used).toJasmin(TestUtils.optimize(code)).getReports());
+        List<Report> reports = new BackendStage(false, used - 1).toJasmin(TestUtils.optimize(code)).getReports();
+        TestUtils.mustFail(reports);
+        assertTrue(reports.toString(), reports.toString().contains(" needs " + used + " registers, more than the "
+                + (used - 1) + " allowed"));
+    }
+
+    @Test
+    public void testShortCircuitAnd() {
+        // f prints its first argument, so the output shows which operands were evaluated
+        String code = "import io;\n" +
+                "class ShortCircuit {\n" +
+                "    public boolean f(int n, boolean value) {\n" +
+                "        io.println(n);\n" +
+                "        return value;\n" +
+                "    }\n" +
+                "    public static void main(String[] args) {\n" +
+                "        ShortCircuit s;\n" +
+                "        boolean b;\n" +
+                "        s = new ShortCircuit();\n" +
+                "        b = s.f(1, false) && s.f(2, true);\n" +
+                "        if (s.f(3, true) && s.f(4, false) && s.f(5, true)) {\n" +
+                "            io.println(0);\n" +
+                "        } else {\n" +
+                "            io.println(6);\n" +
+                "        }\n" +
+                "        while (false && s.f(7, true)) {\n" +
+                "            io.println(0);\n" +
+                "        }\n" +
+                "    }\n" +
+                "}\n";
+
+        for (boolean optimize : Arrays.asList(false, true)) {
+            JasminResult result = TestUtils.backend(TestUtils.optimize(code, optimize));
+            TestUtils.noErrors(result.getReports());
+            assertEquals("1\n3\n4\n6", result.run().trim().replace("\r\n", "\n"));
+        }
+    }
+
+    @Test
+    public void testStackAnalysis() throws StackHeightMismatch {
+        // The deepest point is inside the branch, with the value printed at the end and the operands of iastore
+        String code = "iconst_1\n" +
+                "aload_1\n" +
+                "iconst_0\n" +
+                "ifeq Else\n" +
+                "iconst_0\n" +
+                "iconst_1\n" +
+                "iastore\n" +
+                "goto End\n" +
+                "Else:\n" +
+                "pop\n" +
+                "End:\n" +
+                "invokestatic io.println(I)V\n" +
+                "return\n";
+        assertEquals(4, new JasminStackAnalysis(code).getMaxStack());
+    }
+
+    @Test(expected = StackHeightMismatch.class)
+    public void testStackHeightMismatch() throws StackHeightMismatch {
+        // The fall through leaves one value more than the jump to the label
+        new JasminStackAnalysis("iconst_1\nifeq L\niconst_0\nL:\nreturn\n").getMaxStack();
+    }
+
+    @Test(expected = StackHeightMismatch.class)
+    public void testStackUnderflow() throws StackHeightMismatch {
+        new JasminStackAnalysis("iconst_1\niadd\nreturn\n").getMaxStack();
+    }
+
+    @Test(expected = StackHeightMismatch.class)
+    public void testUnknownInstruction() throws StackHeightMismatch {
+        new JasminStackAnalysis("iconst_1\nError in Instructions\nreturn\n").getMaxStack();
+    }
+
+    @Test
+    public void testUnsupportedInstruction() {
+        // The == of the branch is not supported, so the generated code cannot be checked
+        OllirResult ollirResult = new OllirResult(SpecsIo.getResource("fixtures/public/ollir/myclass4.ollir"));
+        TestUtils.mustFail(new BackendStage().toJasmin(ollirResult).getReports());
+
+        // Nothing of the method that failed is written
+        StringWriter writer = new StringWriter();
+        TestUtils.mustFail(new BackendStage().toJasmin(new OllirResult(SpecsIo.getResource("fixtures/public/ollir/myclass4.ollir")), writer));
+        assertFalse(writer.toString().contains("check"));
+        assertTrue(writer.toString().endsWith(".end method\n"));
+    }
+
+    /**
+     * Call this method to measure the Jasmin generation of methods with thousands of labels or add @Test
+     * @throws OllirErrorException  error in the OLLIR labels
+     * @throws StackHeightMismatch  error in the generated code
+     */
+    public void labelsBenchmark() throws OllirErrorException, StackHeightMismatch {
+        for (int statements = 1000; statements <= 8000; statements *= 2) {
+            StringBuilder code = new StringBuilder("class Labels {\npublic int m(int a) {\n");
+            for (int i = 0; i < statements; i++) {
+                code.append(String.format("if (a < %d) { a = a + 1; } else { a = a - 1; }\n", i));
+            }
+            code.append("return a; }\npublic static void main(String[] args) { }\n}\n");
+
+            ClassUnit classUnit = new OptimizationStage().toOllirClass(TestUtils.analyse(code.toString())).getOllirClass();
+            classUnit.checkMethodLabels();
+            classUnit.buildVarTables();
+
+            long start = System.nanoTime();
+            new JasminGenerator(classUnit).dealWithClass();
+            long time = System.nanoTime() - start;
+
+            System.out.printf("%d labels: %d ms%n", statements * 2, time / 1_000_000);
+        }
+    }
 }
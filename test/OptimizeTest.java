@@ -19,6 +19,10 @@ import pt.up.fe.specs.util.SpecsIo;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class OptimizeTest {
     private List<String> validFiles = Arrays.asList(
             "fixtures/public/FindMaximum.jmm",
@@ -51,4 +55,86 @@ public class OptimizeTest {
             System.out.printf("Testing: %-40s - PASSED\n\n", filename);
         }
     }
+
+    @Test
+    public void testOptimizedJmmToOllir() {
+        System.out.println("\nTesting Valid Files in test/public with optimizations\n");
+        for (String filename : this.validFiles) {
+            System.out.printf("Testing: %-40s\n", filename);
+
+            var result = TestUtils.optimize(SpecsIo.getResource(filename), true);
+            TestUtils.noErrors(result.getReports());
+            TestUtils.noErrors(TestUtils.backend(result).getReports());
+
+            System.out.printf("Testing: %-40s - PASSED\n\n", filename);
+        }
+    }
+
+    @Test
+    public void testConstantPropagation() {
+        var result = TestUtils.optimize(SpecsIo.getResource("fixtures/public/WhileAndIF.jmm"), true);
+        TestUtils.noErrors(result.getReports());
+
+        // a < b is false, so only the else branch is left, with b - 1 folded
+        String ollirCode = result.getOllirCode();
+        assertTrue(ollirCode.contains("c.i32 :=.i32 9.i32;"));
+        assertFalse(ollirCode.contains("goto else"));
+        // 0 - 1 is folded in the condition of the loop, which assigns a and b, and the loop ends when it is false
+        assertTrue(ollirCode.contains("if (-1.i32 >=.i32 c.i32) goto endloop"));
+        assertTrue(ollirCode.contains("a.i32 -.i32 b.i32"));
+
+        String output = TestUtils.backend(result).run();
+        assertEquals(SpecsIo.getResource("fixtures/public/WhileAndIF.txt").trim().replace("\r\n", "\n"),
+                output.trim().replace("\r\n", "\n"));
+    }
+
+    @Test
+    public void testComparisonBranch() {
+        var result = TestUtils.optimize(SpecsIo.getResource("fixtures/public/WhileAndIF.jmm"));
+        TestUtils.noErrors(result.getReports());
+
+        // if (a < b) jumps to the else branch on a >= b, without a boolean temporary
+        String ollirCode = result.getOllirCode();
+        assertTrue(ollirCode.contains("if (a.i32 >=.i32 b.i32) goto else1;"));
+        assertFalse(ollirCode.contains("!.bool"));
+
+        String jasminCode = TestUtils.backend(result).getJasminCode();
+        assertTrue(jasminCode.contains("if_icmpge else1\n"));
+    }
+
+    @Test
+    public void testCompactAstToOllir() {
+        System.out.println("\nTesting Valid Files in test/public with the compact AST\n");
+        for (String filename : this.validFiles) {
+            System.out.printf("Testing: %-40s\n", filename);
+
+            String code = SpecsIo.getResource(filename);
+            var expected = TestUtils.optimize(code);
+            var semantics = new AnalysisStage().semanticAnalysis(new Main().parse(code, true));
+            var result = new OptimizationStage().toOllir(semantics);
+            TestUtils.noErrors(result.getReports());
+            assertEquals(expected.getOllirCode(), result.getOllirCode());
+
+            System.out.printf("Testing: %-40s - PASSED\n\n", filename);
+        }
+    }
+
+    @Test
+    public void testOllirClassToJasmin() {
+        System.out.println("\nTesting Valid Files in test/public without parsing the OLLIR code\n");
+        for (String filename : this.validFiles) {
+            System.out.printf("Testing: %-40s\n", filename);
+
+            String code = SpecsIo.getResource(filename);
+            var semantics = TestUtils.analyse(code);
+            var expected = new OptimizationStage().toOllir(semantics);
+            var result = new OptimizationStage().toOllirClass(semantics);
+            TestUtils.noErrors(result.getReports());
+            assertEquals(new BackendStage().toJasmin(expected).getJasminCode(),
+                    new BackendStage().toJasmin(result).getJasminCode());
+            assertEquals(expected.getOllirCode(), result.getOllirCode());
+
+            System.out.printf("Testing: %-40s - PASSED\n\n", filename);
+        }
+    }
 }
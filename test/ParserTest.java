@@ -1,7 +1,12 @@
 import org.junit.Before;
 import org.junit.Test;
 import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.JmmNode;
 import pt.up.fe.comp.jmm.JmmParserResult;
+import pt.up.fe.comp.jmm.ast.JmmNodeArena;
+import pt.up.fe.comp.jmm.ast.JmmNodeKinds;
+import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
+import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.specs.util.SpecsIo;
 
@@ -9,11 +14,23 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class ParserTest {
     private final List<String> validFiles = Arrays.asList(
@@ -72,6 +89,238 @@ public class ParserTest {
         }
     }
 
+    /**
+     * Call this method to compare the JSON round-trip with the direct conversion of the AST or add @Test
+     * @throws ParseException  error while parsing
+     */
+    public void sanitizeBenchmark() throws ParseException {
+        String code = TestUtils.generateBigClass(2000, "");
+
+        SimpleNode root = new JAVAMINUSMINUSPARSER(new StringReader(code)).Program();
+
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            JmmNode.fromJson(root.toJson());
+            long json = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            root.sanitize();
+            long direct = System.nanoTime() - start;
+
+            System.out.printf("JSON round-trip: %d ms | Direct conversion: %d ms%n", json / 1_000_000, direct / 1_000_000);
+        }
+    }
+
+    @Test
+    public void testSanitize() throws ParseException {
+        System.out.println("\nTesting AST conversion");
+        for (String filename : this.validFiles) {
+            System.out.print("Testing: " + filename);
+            String code = SpecsIo.getResource(filename);
+            SimpleNode root = new JAVAMINUSMINUSPARSER(new StringReader(code)).Program();
+            assertEquals(JmmNode.fromJson(root.toJson()).toJson(), root.sanitize().toJson());
+            System.out.print("  - PASSED\n");
+        }
+    }
+
+    /**
+     * Call this method to compare the memory used by the default and the compact AST or add @Test
+     * @throws ParseException  error while parsing
+     */
+    public void compactAstBenchmark() throws ParseException {
+        String code = TestUtils.generateBigClass(20000, "");
+
+        Runtime runtime = Runtime.getRuntime();
+        SimpleNode root = new JAVAMINUSMINUSPARSER(new StringReader(code)).Program();
+
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        JmmNode tree = root.sanitize();
+        System.gc();
+        long sanitized = runtime.totalMemory() - runtime.freeMemory() - before;
+
+        before = runtime.totalMemory() - runtime.freeMemory();
+        JmmNode compact = JmmNodeArena.compact(root, JAVAMINUSMINUSPARSERTreeConstants.jjtNodeName);
+        System.gc();
+        long compacted = runtime.totalMemory() - runtime.freeMemory() - before;
+
+        System.out.printf("JmmNodeImpl tree: %d KB | Compact tree: %d KB (%s, %s)%n", sanitized / 1024, compacted / 1024,
+                tree.getKind(), compact.getKind());
+    }
+
+    /**
+     * Call this method to measure the memory allocated by traversals of the AST or add @Test
+     */
+    public void childIterationBenchmark() throws ParseException {
+        String code = TestUtils.generateBigClass(2000, "");
+
+        SimpleNode root = new JAVAMINUSMINUSPARSER(new StringReader(code)).Program();
+        List<JmmNode> trees = Arrays.asList(root, root.sanitize(),
+                JmmNodeArena.compact(root, JAVAMINUSMINUSPARSERTreeConstants.jjtNodeName));
+
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (JmmNode tree : trees) {
+            // Warm up
+            for (int i = 0; i < 10; i++) {
+                countWithGetChildren(tree);
+                countWithGetChild(tree);
+            }
+
+            long before = threads.getCurrentThreadAllocatedBytes();
+            int nodes = countWithGetChildren(tree);
+            long withGetChildren = threads.getCurrentThreadAllocatedBytes() - before;
+
+            before = threads.getCurrentThreadAllocatedBytes();
+            countWithGetChild(tree);
+            long withGetChild = threads.getCurrentThreadAllocatedBytes() - before;
+
+            System.out.printf("%s, %d nodes: getChildren %d KB | getChild %d KB%n", tree.getClass().getSimpleName(),
+                    nodes, withGetChildren / 1024, withGetChild / 1024);
+        }
+    }
+
+    private static int countWithGetChildren(JmmNode node) {
+        int count = 1;
+        for (JmmNode child : node.getChildren()) {
+            count += countWithGetChildren(child);
+        }
+        return count;
+    }
+
+    private static int countWithGetChild(JmmNode node) {
+        int count = 1;
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            count += countWithGetChild(node.getChild(i));
+        }
+        return count;
+    }
+
+    @Test
+    public void testCompactAst() throws ParseException {
+        System.out.println("\nTesting compact AST");
+        for (String filename : this.validFiles) {
+            System.out.print("Testing: " + filename);
+            String code = SpecsIo.getResource(filename);
+            SimpleNode root = new JAVAMINUSMINUSPARSER(new StringReader(code)).Program();
+            JmmNode compact = JmmNodeArena.compact(root, JAVAMINUSMINUSPARSERTreeConstants.jjtNodeName);
+            // The attributes keep their order, so the JSON is the same text
+            assertEquals(root.sanitize().toJson(), compact.toJson());
+            assertEquals(compact, compact.getChildren().get(0).getParent());
+            System.out.print("  - PASSED\n");
+        }
+    }
+
+    @Test
+    public void testCompactPositions() {
+        JmmNodeArena arena = new JmmNodeArena(JAVAMINUSMINUSPARSERTreeConstants.jjtNodeName, 16);
+        JmmNode node = arena.newNode("Variable");
+        node.put("line", "3");
+        node.put("name", "a");
+        node.put("col", "7");
+        assertEquals(Arrays.asList("line", "name", "col"), node.getAttributes());
+        assertEquals("3", node.get("line"));
+
+        // A position that is not a number replaces the one kept as an int
+        node.put("line", "unknown");
+        assertEquals("unknown", node.get("line"));
+        assertEquals(Arrays.asList("line", "name", "col"), node.getAttributes());
+        node.put("line", "4");
+        assertEquals("4", node.get("line"));
+        assertEquals("7", node.get("col"));
+    }
+
+    @Test
+    public void testCompactAstAcrossThreads() throws Exception {
+        String code = TestUtils.generateBigClass(500, "");
+        SimpleNode root = new JAVAMINUSMINUSPARSER(new StringReader(code)).Program();
+
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int run = 0; run < 20; run++) {
+                JmmNode compact = JmmNodeArena.compact(root, JAVAMINUSMINUSPARSERTreeConstants.jjtNodeName);
+                CyclicBarrier start = new CyclicBarrier(threads);
+
+                // Threads walking a new tree at the same time get the same node objects
+                List<Callable<List<JmmNode>>> walks = Collections.nCopies(threads, () -> {
+                    start.await();
+                    return preorder(compact);
+                });
+                List<Future<List<JmmNode>>> results = executor.invokeAll(walks);
+                List<JmmNode> expected = results.get(0).get();
+                for (Future<List<JmmNode>> result : results) {
+                    List<JmmNode> nodes = result.get();
+                    assertEquals(expected.size(), nodes.size());
+                    for (int i = 0; i < nodes.size(); i++) {
+                        assertSame(expected.get(i), nodes.get(i));
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<JmmNode> preorder(JmmNode root) {
+        List<JmmNode> nodes = new ArrayList<>();
+        Deque<JmmNode> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            JmmNode node = pending.pop();
+            nodes.add(node);
+            for (int i = node.getNumChildren() - 1; i >= 0; i--) {
+                pending.push(node.getChild(i));
+            }
+        }
+        return nodes;
+    }
+
+    @Test
+    public void testKindIds() throws ParseException {
+        String code = SpecsIo.getResource("fixtures/public/Life.jmm");
+        SimpleNode root = new JAVAMINUSMINUSPARSER(new StringReader(code)).Program();
+        JmmNode compact = JmmNodeArena.compact(root, JAVAMINUSMINUSPARSERTreeConstants.jjtNodeName);
+
+        // The parser, sanitized and compact nodes share the same ids
+        assertSameKindIds(root, root.sanitize());
+        assertSameKindIds(root, compact);
+        assertSameKindIds(root, JmmNode.fromJson(root.toJson()));
+    }
+
+    @Test
+    public void testDeepExpressions() {
+        // Deeper than the Java stack allows with one call per level
+        int depth = 100_000;
+        String expression = "!".repeat(depth) + "(".repeat(depth) + "a[".repeat(depth) + "0" + "]".repeat(depth)
+                + ")".repeat(depth) + " + 1".repeat(depth);
+        String code = "class Deep {\n public int f(int[] a) {\n  return " + expression + ";\n }\n}";
+
+        JmmParserResult result = TestUtils.parse(code);
+        TestUtils.noErrors(result.getReports());
+
+        var countNot = new PreorderJmmVisitor<Void, Integer>(
+                (nodeResult, childrenResults) -> nodeResult + childrenResults.stream().mapToInt(Integer::intValue).sum());
+        countNot.addVisit("NotExpression", (node, data) -> 1);
+        countNot.setDefaultVisit((node, data) -> 0);
+        assertEquals(depth, (int) countNot.visit(result.getRootNode(), null));
+
+        var countArrayAccess = new PostorderJmmVisitor<Void, Integer>(
+                (nodeResult, childrenResults) -> nodeResult + childrenResults.stream().mapToInt(Integer::intValue).sum());
+        countArrayAccess.addVisit("ArrayAccess", (node, data) -> 1);
+        countArrayAccess.addVisit("BinaryOperation", (node, data) -> 1);
+        countArrayAccess.setDefaultVisit((node, data) -> 0);
+        assertEquals(2 * depth, (int) countArrayAccess.visit(result.getRootNode(), null));
+    }
+
+    private static void assertSameKindIds(JmmNode expected, JmmNode actual) {
+        assertEquals(expected.getKind(), JmmNodeKinds.getName(expected.getKindId()));
+        assertEquals(expected.getKindId(), actual.getKindId());
+        assertEquals(expected.getNumChildren(), actual.getNumChildren());
+        for (int i = 0; i < expected.getNumChildren(); i++) {
+            assertSameKindIds(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
+
     @Test
     public void testParser() {
         System.out.println("\nTesting Valid Files");